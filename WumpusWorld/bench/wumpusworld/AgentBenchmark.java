@@ -0,0 +1,72 @@
+package wumpusworld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MyAgent.doAction end to end: one invocation plays a whole game on the
+ * next of a fixed list of seeded maps.
+ *
+ * The agents get options without posterior cache and without time
+ * limit, so every decision does the same work in every iteration. The
+ * options have the number of pits of the maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentBenchmark
+{
+    //Actions after which a game is stopped
+    private static final int MAX_ACTIONS = 10000;
+
+    @Param({"4", "8"})
+    public int size;
+
+    @Param({"256"})
+    public int maps;
+
+    private WorldMap[] worldMaps;
+    private AgentOptions options;
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        worldMaps = new WorldMap[maps];
+        for (int i = 0; i < maps; i++)
+        {
+            worldMaps[i] = BenchMaps.create(size, i);
+        }
+        options = new AgentOptions(0);
+        options.setDecisionTimeMillis(0);
+        options.setPitCount(BenchMaps.pits(size));
+    }
+
+    @Benchmark
+    public int playGame()
+    {
+        World w = worldMaps[next].generateWorld();
+        next = (next + 1) % maps;
+        Agent a = new MyAgent(w, options);
+        int actions = 0;
+        while (!w.gameOver() && actions < MAX_ACTIONS)
+        {
+            a.doAction();
+            actions++;
+        }
+        return w.getScore();
+    }
+}
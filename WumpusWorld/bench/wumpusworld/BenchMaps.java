@@ -0,0 +1,69 @@
+package wumpusworld;
+
+import java.util.Random;
+
+/**
+ * Seeded maps of any size for the benchmarks. 4x4 maps come from
+ * MapGenerator. Larger maps follow the same rules: the Wumpus, the gold
+ * and the pits are placed anywhere except (1,1), the pits in distinct
+ * squares, with the pit density of the 4x4 maps.
+ */
+final class BenchMaps
+{
+    private BenchMaps()
+    {
+    }
+
+    /**
+     * Returns the map for a seed.
+     *
+     * @param size Size of the world
+     * @param seed Seed, the same seed always gives the same map
+     * @return The map
+     */
+    static WorldMap create(int size, int seed)
+    {
+        if (size == 4) return MapGenerator.getRandomMap(seed);
+        Random rnd = new Random(seed);
+        WorldMap m = new WorldMap(size);
+        int[] p = randomSquare(size, rnd);
+        m.addWumpus(p[0], p[1]);
+        p = randomSquare(size, rnd);
+        m.addGold(p[0], p[1]);
+        int pits = pits(size);
+        while (pits > 0)
+        {
+            p = randomSquare(size, rnd);
+            if (!m.hasPit(p[0], p[1]))
+            {
+                m.addPit(p[0], p[1]);
+                pits--;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Returns the number of pits in the maps of a size.
+     *
+     * @param size Size of the world
+     * @return Number of pits
+     */
+    static int pits(int size)
+    {
+        return Math.round((float)FrontierInference.PIT_PRIOR * (size * size - 1));
+    }
+
+    /**
+     * Returns a random square other than (1,1).
+     */
+    private static int[] randomSquare(int size, Random rnd)
+    {
+        while (true)
+        {
+            int x = rnd.nextInt(size) + 1;
+            int y = rnd.nextInt(size) + 1;
+            if (x != 1 || y != 1) return new int[] {x, y};
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package wumpusworld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pit posteriors of a frontier with a given number of squares.
+ *
+ * The agent has visited the first squares of the bottom row of a 24x24
+ * world and felt a breeze in each, so the frontier is one component: the
+ * squares above the visited ones and the next square of the row. A new
+ * belief state is made before each invocation, since a belief state only
+ * counts a component again when it has changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InferenceBenchmark
+{
+    private static final int SIZE = 24;
+
+    @Param({"4", "8", "12", "16", "20"})
+    public int frontier;
+
+    private BeliefState belief;
+    private double[] probabilities;
+    private int pits;
+
+    @Setup(Level.Invocation)
+    public void setup()
+    {
+        belief = new BeliefState(SIZE, true, false);
+        for (int x = 1; x < frontier - 1; x++)
+        {
+            belief.visit(x, true, false);
+        }
+        probabilities = new double[SIZE * SIZE];
+        pits = Math.round((float)FrontierInference.PIT_PRIOR * (SIZE * SIZE - 1));
+    }
+
+    @Benchmark
+    public double[] pitProbabilities()
+    {
+        belief.pitProbabilities(pits, probabilities);
+        return probabilities;
+    }
+}
@@ -0,0 +1,107 @@
+package wumpusworld;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MapGenerator.getRandomMap, MapReader.readMaps on a temporary map file
+ * with the maps for the first seeds, and the worlds of the same maps
+ * generated from a map file and from a map corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark
+{
+    @Param({"1000"})
+    public int maps;
+
+    private File file;
+    private File corpus;
+    private int seed;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = File.createTempFile("maps", ".txt");
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        for (int i = 0; i < maps; i++)
+        {
+            WorldMap m = MapGenerator.getRandomMap(i);
+            out.println("NEW " + m.getSize());
+            out.println("W " + m.getWumpus().x + " " + m.getWumpus().y);
+            for (int p = 0; p < m.getPits().size(); p++)
+            {
+                out.println("P " + m.getPits().get(p).x + " " + m.getPits().get(p).y);
+            }
+            out.println("G " + m.getGold().x + " " + m.getGold().y);
+            out.println("END");
+        }
+        out.close();
+        corpus = File.createTempFile("maps", ".bin");
+        MapCorpusWriter.write(MapGenerator.getRandomMaps(0, maps), corpus.getPath());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+        corpus.delete();
+    }
+
+    @Benchmark
+    public WorldMap getRandomMap()
+    {
+        return MapGenerator.getRandomMap(seed++);
+    }
+
+    @Benchmark
+    public Vector<WorldMap> readMaps()
+    {
+        return new MapReader(file.getPath()).readMaps();
+    }
+
+    @Benchmark
+    public World generateWorldsFromMapFile()
+    {
+        MapReader mr = new MapReader(file.getPath());
+        mr.setRandomMaps(false);
+        World w = null;
+        for (WorldMap m : mr.readMaps())
+        {
+            w = m.generateWorld();
+        }
+        return w;
+    }
+
+    @Benchmark
+    public World generateWorldsFromCorpus() throws IOException
+    {
+        MapCorpus c = new MapCorpus(corpus);
+        World w = null;
+        for (long i = 0; i < c.size(); i++)
+        {
+            w = c.generateWorld(i);
+        }
+        return w;
+    }
+}
@@ -0,0 +1,109 @@
+package wumpusworld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The World.has* percept queries, for every square of a seeded map where
+ * all squares have been visited, so no query stops at an unknown square.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerceptBenchmark
+{
+    @Param({"4", "8", "16"})
+    public int size;
+
+    private World world;
+
+    @Setup
+    public void setup()
+    {
+        WorldMap m = BenchMaps.create(size, 42);
+        String[][] squares = new String[size + 1][size + 1];
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                String s = "";
+                if (m.hasPit(x, y)) s += World.PIT;
+                if (m.getWumpus().x == x && m.getWumpus().y == y) s += World.WUMPUS;
+                if (m.getGold().x == x && m.getGold().y == y) s += World.GLITTER;
+                if (m.hasPit(x - 1, y) || m.hasPit(x + 1, y) || m.hasPit(x, y - 1) || m.hasPit(x, y + 1)) s += World.BREEZE;
+                if (Math.abs(m.getWumpus().x - x) + Math.abs(m.getWumpus().y - y) == 1) s += World.STENCH;
+                squares[x][y] = s;
+            }
+        }
+        world = new World(squares, size, 1, 1, World.DIR_RIGHT);
+    }
+
+    @Benchmark
+    public int hasBreeze()
+    {
+        int count = 0;
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                if (world.hasBreeze(x, y)) count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasStench()
+    {
+        int count = 0;
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                if (world.hasStench(x, y)) count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasPit()
+    {
+        int count = 0;
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                if (world.hasPit(x, y)) count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int hasGlitter()
+    {
+        int count = 0;
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                if (world.hasGlitter(x, y)) count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,58 @@
+package wumpusworld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RoutePlanner.plan from the start square to the opposite corner, through
+ * the squares that are not pits in a seeded map. Known pits can be
+ * crossed at a high cost, so a route always exists.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteBenchmark
+{
+    @Param({"4", "8", "16"})
+    public int size;
+
+    private RoutePlanner planner;
+    private BitBoard known;
+    private BitBoard pits;
+    private int[] actions;
+    private int goal;
+
+    @Setup
+    public void setup()
+    {
+        World w = BenchMaps.create(size, 42).generateWorld();
+        pits = w.getPitMask(new BitBoard(size));
+        known = new BitBoard(size);
+        for (int c = 0; c < size * size; c++)
+        {
+            known.set(c);
+        }
+        planner = new RoutePlanner(size);
+        actions = new int[size * size * 4];
+        goal = size * size - 1;
+    }
+
+    @Benchmark
+    public int plan()
+    {
+        return planner.plan(known, pits, 0, World.DIR_RIGHT, goal, -1, actions);
+    }
+}
@@ -0,0 +1,71 @@
+package wumpusworld;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * World.doAction for each action type.
+ *
+ * Each action is executed in the same state: the benchmark marks the
+ * world, executes the action and undoes it, so the time includes the
+ * undo. The world has the gold in the start square, the Wumpus at the
+ * end of the first row so that shooting to the right kills it, and a pit
+ * above the start square. For the climb action the player is first moved
+ * into the pit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark
+{
+    @Param({"4", "8", "16"})
+    public int size;
+
+    @Param({"MOVE", "TURN_LEFT", "TURN_RIGHT", "GRAB", "SHOOT", "CLIMB"})
+    public String action;
+
+    private World world;
+    private int op;
+
+    @Setup
+    public void setup()
+    {
+        world = new World(size);
+        world.addGold(1, 1);
+        world.addWumpus(size, 1);
+        world.addPit(1, 2);
+        if (action.equals("MOVE")) op = World.OP_MOVE;
+        if (action.equals("TURN_LEFT")) op = World.OP_TURN_LEFT;
+        if (action.equals("TURN_RIGHT")) op = World.OP_TURN_RIGHT;
+        if (action.equals("GRAB")) op = World.OP_GRAB;
+        if (action.equals("SHOOT")) op = World.OP_SHOOT;
+        if (action.equals("CLIMB"))
+        {
+            op = World.OP_CLIMB;
+            world.doAction(World.OP_TURN_LEFT);
+            world.doAction(World.OP_MOVE);
+        }
+    }
+
+    @Benchmark
+    public int doAction()
+    {
+        int mark = world.mark();
+        int result = world.doAction(op);
+        world.undoTo(mark);
+        return result;
+    }
+}
@@ -0,0 +1,282 @@
+package wumpusworld;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings and shared data for all agents in a run. Agents created
+ * without options use the default instance, which reads its settings
+ * from config.txt the first time it is used.
+ */
+public class AgentOptions
+{
+    /**
+     * Decision made by the knowledge base without posteriors.
+     */
+    public static final int DECISION_DEDUCED = 0;
+
+    /**
+     * Decision made with posteriors from the table or the cache.
+     */
+    public static final int DECISION_CACHED = 1;
+
+    /**
+     * Decision made with estimated posteriors, because inference did not
+     * finish before the deadline, or with posteriors of a sampled
+     * frontier component.
+     */
+    public static final int DECISION_APPROXIMATE = 2;
+
+    /**
+     * Decision made with exact posteriors from inference.
+     */
+    public static final int DECISION_INFERRED = 3;
+
+    private static AgentOptions defaultOptions;
+
+    private final PosteriorCache posteriorCache;
+    private PosteriorTable posteriorTable;
+    private int sampleThreshold = 24;
+    private int sampleBudget = 100000;
+    private int sampleTimeMillis = 20;
+    private int parallelThreshold = 20;
+    private int decisionTimeMillis = 1000;
+    private int rollouts = 0;
+    private int rolloutTimeMillis = 50;
+    private int rolloutDepth = 3;
+    private int pitCount = FrontierInference.UNKNOWN_PITS;
+
+    //Number of decisions made by each tier, indexed by DECISION_*
+    private final AtomicLong[] decisions = new AtomicLong[4];
+
+    /**
+     * Creates new options.
+     *
+     * @param cacheSize Number of observation states in the posterior cache, 0 to disable the cache
+     */
+    public AgentOptions(int cacheSize)
+    {
+        posteriorCache = cacheSize > 0 ? new PosteriorCache(cacheSize) : null;
+        for (int i = 0; i < decisions.length; i++)
+        {
+            decisions[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Returns the options shared by all agents that are created
+     * without options.
+     *
+     * @return Default options
+     */
+    public static synchronized AgentOptions getDefault()
+    {
+        if (defaultOptions == null)
+        {
+            defaultOptions = new AgentOptions(Config.getInt("CacheSize", 65536));
+            defaultOptions.setSampling(Config.getInt("SampleThreshold", 24),
+                    Config.getInt("SampleBudget", 100000),
+                    Config.getInt("SampleTimeMillis", 20));
+            defaultOptions.setParallelThreshold(Config.getInt("ParallelThreshold", 20));
+            defaultOptions.setDecisionTimeMillis(Config.getInt("DecisionTimeMillis", 1000));
+            defaultOptions.setPitCount(Config.getInt("Pits", FrontierInference.UNKNOWN_PITS));
+            defaultOptions.setRollouts(Config.getInt("Rollouts", 0),
+                    Config.getInt("RolloutTimeMillis", 50),
+                    Config.getInt("RolloutDepth", 3));
+            String table = Config.getString("PosteriorTable", "");
+            if (!table.equals(""))
+            {
+                try
+                {
+                    defaultOptions.setPosteriorTable(new PosteriorTable(new File(table)));
+                }
+                catch (IOException ex)
+                {
+                    System.out.println("Unable to open posterior table: " + ex.getMessage());
+                }
+            }
+        }
+        return defaultOptions;
+    }
+
+    /**
+     * Returns the posterior cache shared by the agents.
+     *
+     * @return Posterior cache, or null if caching is disabled
+     */
+    public PosteriorCache getPosteriorCache()
+    {
+        return posteriorCache;
+    }
+
+    /**
+     * Returns the precomputed posteriors for 4x4 worlds.
+     *
+     * @return Posterior table, or null if none is used
+     */
+    public PosteriorTable getPosteriorTable()
+    {
+        return posteriorTable;
+    }
+
+    /**
+     * Sets the precomputed posteriors for 4x4 worlds. Agents look up
+     * their observations in the table before they compute posteriors.
+     * Must be set before the agents start.
+     *
+     * @param table Posterior table, or null to not use one
+     */
+    public void setPosteriorTable(PosteriorTable table)
+    {
+        posteriorTable = table;
+    }
+
+    /**
+     * Sets when and how much agents sample instead of enumerating the
+     * pit hypotheses of a frontier component.
+     *
+     * @param threshold Components with more free squares than this are sampled, 0 to never sample
+     * @param samples Maximum number of samples per decision
+     * @param timeMillis Maximum sampling time per decision in milliseconds
+     */
+    public void setSampling(int threshold, int samples, int timeMillis)
+    {
+        sampleThreshold = threshold;
+        sampleBudget = samples;
+        sampleTimeMillis = timeMillis;
+    }
+
+    /**
+     * Sets when agents enumerate the pit hypotheses of a frontier
+     * component in parallel on the common fork/join pool.
+     *
+     * @param threshold Components with more free squares than this are enumerated in parallel, 0 to never
+     */
+    public void setParallelThreshold(int threshold)
+    {
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Returns when agents enumerate a frontier component in parallel.
+     *
+     * @return Number of free squares above which components are enumerated in parallel, 0 for never
+     */
+    public int getParallelThreshold()
+    {
+        return parallelThreshold;
+    }
+
+    /**
+     * Creates a sampler for one agent with the sampling settings.
+     *
+     * @param rnd Random generator used by the sampler
+     * @return New sampler, or null if sampling is disabled
+     */
+    public MonteCarloInference createSampler(Random rnd)
+    {
+        if (sampleThreshold <= 0) return null;
+        return new MonteCarloInference(sampleThreshold, sampleBudget, sampleTimeMillis * 1000000L, rnd);
+    }
+
+    /**
+     * Sets the time an agent has for a decision when it is asked to
+     * act without a deadline.
+     *
+     * @param timeMillis Time per decision in milliseconds, 0 for no limit
+     */
+    public void setDecisionTimeMillis(int timeMillis)
+    {
+        decisionTimeMillis = timeMillis;
+    }
+
+    /**
+     * Returns the time an agent has for a decision when it is asked to
+     * act without a deadline.
+     *
+     * @return Time per decision in milliseconds, 0 for no limit
+     */
+    public int getDecisionTimeMillis()
+    {
+        return decisionTimeMillis;
+    }
+
+    /**
+     * Sets the number of pits in every world the agents play, when it is
+     * the same for all worlds, as in the maps from MapGenerator. Agents
+     * that know the number deduce more safe squares and use an exact
+     * prior. It must not be set if the worlds can have other numbers of
+     * pits, since agents would then trust squares that have a pit.
+     * Must be set before the agents start.
+     *
+     * @param pits Number of pits, or FrontierInference.UNKNOWN_PITS
+     */
+    public void setPitCount(int pits)
+    {
+        pitCount = pits;
+    }
+
+    /**
+     * Returns the number of pits in every world the agents play.
+     *
+     * @return Number of pits, or FrontierInference.UNKNOWN_PITS if it is not known
+     */
+    public int getPitCount()
+    {
+        return pitCount;
+    }
+
+    /**
+     * Sets the lookahead of the agents. With lookahead, an agent that
+     * must guess simulates short games from the safest frontier squares
+     * in worlds sampled from what it knows, and goes to the square with
+     * the best mean outcome.
+     *
+     * @param count Maximum number of rollouts per decision, 0 to disable the lookahead
+     * @param timeMillis Maximum rollout time per decision in milliseconds
+     * @param depth Number of frontier squares visited in a rollout
+     */
+    public void setRollouts(int count, int timeMillis, int depth)
+    {
+        rollouts = count;
+        rolloutTimeMillis = timeMillis;
+        rolloutDepth = depth;
+    }
+
+    /**
+     * Creates a lookahead planner for one agent with the rollout settings.
+     *
+     * @param size Size of the world
+     * @param pits Number of pits in the world, or FrontierInference.UNKNOWN_PITS
+     * @param rnd Random generator used to seed the planner
+     * @return New planner, or null if the lookahead is disabled
+     */
+    public RolloutPlanner createRolloutPlanner(int size, int pits, Random rnd)
+    {
+        if (rollouts <= 0) return null;
+        return new RolloutPlanner(size, pits, rollouts, rolloutDepth, rolloutTimeMillis * 1000000L, rnd);
+    }
+
+    /**
+     * Counts a decision of an agent.
+     *
+     * @param tier DECISION_* constant of the tier that made the decision
+     */
+    void countDecision(int tier)
+    {
+        decisions[tier].incrementAndGet();
+    }
+
+    /**
+     * Returns the number of decisions made by a tier.
+     *
+     * @param tier DECISION_* constant
+     * @return Number of decisions
+     */
+    public long getDecisions(int tier)
+    {
+        return decisions[tier].get();
+    }
+}
@@ -0,0 +1,16 @@
+package wumpusworld;
+
+/**
+ * Interface for a Wumpus World solver agent that can be given a
+ * deadline for each action. The agent improves its decision while there
+ * is time, and acts on the best decision it has when the deadline passes.
+ */
+public interface AnytimeAgent extends Agent
+{
+    /**
+     * Asks the agent to execute an action, decided before a deadline.
+     *
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     */
+    public void doAction(long deadlineNanos);
+}
@@ -0,0 +1,312 @@
+package wumpusworld;
+
+import java.util.ArrayList;
+
+/**
+ * The observations an agent has made in a Wumpus World, together with
+ * the pit counts of each frontier component.
+ *
+ * The belief state is updated when a square is visited, a pit is found
+ * or the Wumpus is killed. Only the frontier components touched by the
+ * new observation are marked as dirty, and only those are counted again
+ * the next time the pit probabilities are asked for. Counts of the other
+ * components are kept from earlier turns, so the cost per turn does not
+ * grow with the explored area.
+ */
+public class BeliefState
+{
+    private final BoardGeometry g;
+    private final FrontierInference inference;
+
+    private final BitBoard visited;
+    private final BitBoard breeze;
+    private final BitBoard stench;
+    private final BitBoard knownPits;
+    private final BitBoard frontier;
+    private boolean wumpusAlive = true;
+
+    //Clean components, and the component of each frontier cell
+    private final ArrayList<FrontierInference.Component> components = new ArrayList<FrontierInference.Component>();
+    private final FrontierInference.Component[] compOf;
+    //Frontier cells that must be counted again
+    private final BitBoard dirty;
+
+    /**
+     * Creates a new belief state where only the start square
+     * (1,1) has been visited.
+     *
+     * @param size Size of the world
+     * @param breezeAtStart True if there is a breeze in the start square
+     * @param stenchAtStart True if there is a stench in the start square
+     */
+    public BeliefState(int size, boolean breezeAtStart, boolean stenchAtStart)
+    {
+        g = BoardGeometry.of(size);
+        inference = new FrontierInference(size);
+        visited = new BitBoard(size);
+        breeze = new BitBoard(size);
+        stench = new BitBoard(size);
+        knownPits = new BitBoard(size);
+        frontier = new BitBoard(size);
+        dirty = new BitBoard(size);
+        compOf = new FrontierInference.Component[g.getCells()];
+        visit(0, breezeAtStart, stenchAtStart);
+    }
+
+    /**
+     * Adds the percepts of a square the agent has moved to. Squares
+     * that have been visited before are ignored.
+     *
+     * @param cell Cell index
+     * @param hasBreeze True if there is a breeze in the square
+     * @param hasStench True if there is a stench in the square
+     */
+    public void visit(int cell, boolean hasBreeze, boolean hasStench)
+    {
+        if (visited.get(cell)) return;
+
+        visited.set(cell);
+        if (hasBreeze) breeze.set(cell);
+        if (hasStench && wumpusAlive) stench.set(cell);
+
+        //The square leaves the frontier, and its neighbors are linked
+        //through the new percepts
+        markDirty(cell);
+        frontier.clear(cell);
+        dirty.clear(cell);
+        for (int n : g.neighbors(cell))
+        {
+            if (visited.get(n)) continue;
+            markDirty(n);
+            frontier.set(n);
+            dirty.set(n);
+        }
+    }
+
+    /**
+     * Adds a pit in a visited square.
+     *
+     * @param cell Cell index
+     */
+    public void pitFound(int cell)
+    {
+        if (knownPits.get(cell)) return;
+        knownPits.set(cell);
+
+        //The pit explains the breeze of its visited neighbors
+        for (int v : g.neighbors(cell))
+        {
+            if (!visited.get(v)) continue;
+            for (int n : g.neighbors(v))
+            {
+                markDirty(n);
+            }
+        }
+    }
+
+    /**
+     * Removes all stench percepts after the Wumpus has been killed.
+     */
+    public void wumpusKilled()
+    {
+        if (!wumpusAlive) return;
+        wumpusAlive = false;
+        stench.clear();
+    }
+
+    /**
+     * Sets the sampler used for frontier components that are too
+     * large to enumerate.
+     *
+     * @param sampler Sampler, or null to enumerate all components
+     */
+    public void setSampler(MonteCarloInference sampler)
+    {
+        inference.setSampler(sampler);
+    }
+
+    /**
+     * Sets when frontier components are enumerated in parallel.
+     *
+     * @param threshold Components with more free squares than this are enumerated in parallel, 0 to never
+     */
+    public void setParallelism(int threshold)
+    {
+        inference.setParallelism(threshold);
+    }
+
+    /**
+     * Calculates the probability that each frontier square has a pit.
+     * Dirty components are counted again first.
+     *
+     * @param pits Number of pits that have not been found, or FrontierInference.UNKNOWN_PITS
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     */
+    public void pitProbabilities(int pits, double[] probabilities)
+    {
+        pitProbabilities(pits, probabilities, null);
+    }
+
+    /**
+     * Calculates the probability that each frontier square has a pit,
+     * and the half-width of its 95% confidence interval. The interval
+     * is 0 for probabilities that were calculated exactly.
+     *
+     * @param pits Number of pits that have not been found, or FrontierInference.UNKNOWN_PITS
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     * @param halfWidths Output, indexed by cell, or null. Only frontier cells are written.
+     */
+    public void pitProbabilities(int pits, double[] probabilities, double[] halfWidths)
+    {
+        for (int i = components.size() - 1; i >= 0; i--)
+        {
+            if (!components.get(i).covers(pits)) markDirty(components.get(i).cells[0]);
+        }
+
+        if (!dirty.isEmpty())
+        {
+            inference.compile(visited, breeze, knownPits, dirty);
+            for (int c = 0; c < inference.getComponentCount(); c++)
+            {
+                FrontierInference.Component comp = inference.count(c, pits);
+                components.add(comp);
+                for (int cell : comp.cells)
+                {
+                    compOf[cell] = comp;
+                    dirty.clear(cell);
+                }
+            }
+        }
+
+        FrontierInference.Component[] comps = components.toArray(new FrontierInference.Component[components.size()]);
+        int hidden = g.getCells() - visited.cardinality() - frontier.cardinality();
+        if (halfWidths != null) inference.combine(comps, comps.length, pits, hidden, probabilities, halfWidths);
+        else inference.combine(comps, comps.length, pits, hidden, probabilities);
+    }
+
+    /**
+     * Calculates the probability that each frontier square has a pit,
+     * unless the deadline passes first. Components that were counted
+     * before the deadline are kept for the next call.
+     *
+     * @param pits Number of pits that have not been found, or FrontierInference.UNKNOWN_PITS
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     * @param halfWidths Output, indexed by cell, or null. Only frontier cells are written.
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     * @return True if the probabilities were calculated, false if the deadline passed
+     */
+    public boolean pitProbabilities(int pits, double[] probabilities, double[] halfWidths, long deadlineNanos)
+    {
+        inference.setDeadline(deadlineNanos);
+        try
+        {
+            pitProbabilities(pits, probabilities, halfWidths);
+            return true;
+        }
+        catch (FrontierInference.DeadlineException ex)
+        {
+            return false;
+        }
+        finally
+        {
+            inference.clearDeadline();
+        }
+    }
+
+    /**
+     * Calculates the probability that each frontier square has the
+     * Wumpus. The probabilities are 0 once the Wumpus has been killed.
+     *
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     */
+    public void wumpusProbabilities(double[] probabilities)
+    {
+        if (!wumpusAlive)
+        {
+            for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                probabilities[f] = 0;
+            }
+            return;
+        }
+        inference.wumpusProbabilities(visited, stench, frontier, probabilities);
+    }
+
+    /**
+     * Returns the frontier squares.
+     *
+     * @return Frontier. Must not be modified.
+     */
+    public BitBoard getFrontier()
+    {
+        return frontier;
+    }
+
+    /**
+     * Returns the visited squares with a known pit.
+     *
+     * @return Known pits. Must not be modified.
+     */
+    public BitBoard getKnownPits()
+    {
+        return knownPits;
+    }
+
+    /**
+     * Returns the visited squares.
+     *
+     * @return Visited squares. Must not be modified.
+     */
+    public BitBoard getVisited()
+    {
+        return visited;
+    }
+
+    /**
+     * Returns the visited squares with a breeze.
+     *
+     * @return Breeze percepts. Must not be modified.
+     */
+    public BitBoard getBreeze()
+    {
+        return breeze;
+    }
+
+    /**
+     * Returns the visited squares with a stench. The set is empty
+     * once the Wumpus has been killed.
+     *
+     * @return Stench percepts. Must not be modified.
+     */
+    public BitBoard getStench()
+    {
+        return stench;
+    }
+
+    /**
+     * Checks if the Wumpus is still alive.
+     *
+     * @return True if the Wumpus has not been killed
+     */
+    public boolean isWumpusAlive()
+    {
+        return wumpusAlive;
+    }
+
+    /**
+     * Marks the component of a frontier cell as dirty.
+     *
+     * @param cell Cell index
+     */
+    private void markDirty(int cell)
+    {
+        FrontierInference.Component comp = compOf[cell];
+        if (comp == null) return;
+        components.remove(comp);
+        for (int c : comp.cells)
+        {
+            compOf[c] = null;
+            if (frontier.get(c)) dirty.set(c);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package wumpusworld;
+
+import java.util.Arrays;
+
+/**
+ * A set of squares in a Wumpus World, stored as one bit per square.
+ * Bits are ordered by cell index (see BoardGeometry). Worlds up to 8x8
+ * are stored in a single 64-bit word, larger worlds use several words.
+ *
+ * None of the operations allocate memory, which makes bitboards usable
+ * in simulation and search loops.
+ */
+public final class BitBoard
+{
+    private final BoardGeometry g;
+    private final long[] bits;
+
+    /**
+     * Creates a new, empty bitboard.
+     *
+     * @param size Size of the world
+     */
+    public BitBoard(int size)
+    {
+        g = BoardGeometry.of(size);
+        bits = new long[g.getWords()];
+    }
+
+    /**
+     * Creates a copy of a bitboard.
+     *
+     * @param other Bitboard to copy
+     */
+    public BitBoard(BitBoard other)
+    {
+        g = other.g;
+        bits = other.bits.clone();
+    }
+
+    /**
+     * Returns the size of the world this bitboard covers.
+     *
+     * @return The size
+     */
+    public int getSize()
+    {
+        return g.getSize();
+    }
+
+    /**
+     * Returns the geometry tables for this bitboard.
+     *
+     * @return Geometry
+     */
+    public BoardGeometry getGeometry()
+    {
+        return g;
+    }
+
+    /**
+     * Checks if a square is in the set. The position is not checked.
+     *
+     * @param x X position
+     * @param y Y position
+     * @return True if the square is in the set
+     */
+    public boolean get(int x, int y)
+    {
+        return get(g.index(x, y));
+    }
+
+    /**
+     * Checks if a cell is in the set.
+     *
+     * @param cell Cell index
+     * @return True if the cell is in the set
+     */
+    public boolean get(int cell)
+    {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Adds a square to the set. The position is not checked.
+     *
+     * @param x X position
+     * @param y Y position
+     */
+    public void set(int x, int y)
+    {
+        set(g.index(x, y));
+    }
+
+    /**
+     * Adds a cell to the set.
+     *
+     * @param cell Cell index
+     */
+    public void set(int cell)
+    {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Removes a square from the set. The position is not checked.
+     *
+     * @param x X position
+     * @param y Y position
+     */
+    public void clear(int x, int y)
+    {
+        clear(g.index(x, y));
+    }
+
+    /**
+     * Removes a cell from the set.
+     *
+     * @param cell Cell index
+     */
+    public void clear(int cell)
+    {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Removes all squares from the set.
+     */
+    public void clear()
+    {
+        Arrays.fill(bits, 0L);
+    }
+
+    /**
+     * Replaces the content of this set with another set.
+     *
+     * @param other Set to copy
+     */
+    public void copyFrom(BitBoard other)
+    {
+        System.arraycopy(other.bits, 0, bits, 0, bits.length);
+    }
+
+    /**
+     * Keeps only the squares that are also in another set.
+     *
+     * @param other Set to intersect with
+     */
+    public void and(BitBoard other)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] &= other.bits[i];
+        }
+    }
+
+    /**
+     * Adds all squares in another set.
+     *
+     * @param other Set to add
+     */
+    public void or(BitBoard other)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] |= other.bits[i];
+        }
+    }
+
+    /**
+     * Removes all squares that are in another set.
+     *
+     * @param other Set to remove
+     */
+    public void andNot(BitBoard other)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] &= ~other.bits[i];
+        }
+    }
+
+    /**
+     * Adds all squares that are horizontally or vertically adjacent
+     * to a square in another set. The squares of the other set are
+     * not added themselves.
+     *
+     * @param src Set to spread from
+     */
+    public void addNeighbors(BitBoard src)
+    {
+        long[] s = src.bits;
+        int n = g.getSize();
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] |= shiftUp(s, g.notLastColumn(), i, 1)
+                    | shiftDown(s, g.notFirstColumn(), i, 1)
+                    | shiftUp(s, null, i, n)
+                    | shiftDown(s, null, i, n);
+        }
+        bits[bits.length - 1] &= g.validWord(bits.length - 1);
+    }
+
+    /**
+     * Checks if this set has any square in common with another set.
+     *
+     * @param other The other set
+     * @return True if the sets intersect
+     */
+    public boolean intersects(BitBoard other)
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            if ((bits[i] & other.bits[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return True if no square is in the set
+     */
+    public boolean isEmpty()
+    {
+        for (int i = 0; i < bits.length; i++)
+        {
+            if (bits[i] != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of squares in the set.
+     *
+     * @return Number of squares
+     */
+    public int cardinality()
+    {
+        int c = 0;
+        for (int i = 0; i < bits.length; i++)
+        {
+            c += Long.bitCount(bits[i]);
+        }
+        return c;
+    }
+
+    /**
+     * Returns the first cell in the set with an index equal to or
+     * higher than a start index.
+     *
+     * @param from Start index
+     * @return Cell index, or -1 if there is no such cell
+     */
+    public int nextSetBit(int from)
+    {
+        int i = from >>> 6;
+        if (i >= bits.length) return -1;
+        long word = bits[i] & (-1L << from);
+        while (true)
+        {
+            if (word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+            if (++i == bits.length) return -1;
+            word = bits[i];
+        }
+    }
+
+    /**
+     * Returns the number of 64-bit words in this set.
+     *
+     * @return Number of words
+     */
+    public int getWordCount()
+    {
+        return bits.length;
+    }
+
+    /**
+     * Returns one 64-bit word of the set. For worlds up to 8x8
+     * word 0 holds the whole set.
+     *
+     * @param word Word index
+     * @return The word
+     */
+    public long getWord(int word)
+    {
+        return bits[word];
+    }
+
+    /**
+     * Replaces one 64-bit word of the set.
+     *
+     * @param word Word index
+     * @param value New word
+     */
+    public void setWord(int word, long value)
+    {
+        bits[word] = value & g.validWord(word);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof BitBoard)) return false;
+        BitBoard b = (BitBoard)o;
+        return b.g == g && Arrays.equals(b.bits, bits);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(bits);
+    }
+
+    /**
+     * Returns word i of (src & mask) shifted n bits towards
+     * higher cell indices.
+     */
+    private static long shiftUp(long[] src, long[] mask, int i, int n)
+    {
+        int wo = n >>> 6;
+        int bo = n & 63;
+        long v = word(src, mask, i - wo) << bo;
+        if (bo != 0) v |= word(src, mask, i - wo - 1) >>> (64 - bo);
+        return v;
+    }
+
+    /**
+     * Returns word i of (src & mask) shifted n bits towards
+     * lower cell indices.
+     */
+    private static long shiftDown(long[] src, long[] mask, int i, int n)
+    {
+        int wo = n >>> 6;
+        int bo = n & 63;
+        long v = word(src, mask, i + wo) >>> bo;
+        if (bo != 0) v |= word(src, mask, i + wo + 1) << (64 - bo);
+        return v;
+    }
+
+    /**
+     * Returns word i of (src & mask), or 0 outside the array.
+     */
+    private static long word(long[] src, long[] mask, int i)
+    {
+        if (i < 0 || i >= src.length) return 0;
+        return mask == null ? src[i] : src[i] & mask[i];
+    }
+}
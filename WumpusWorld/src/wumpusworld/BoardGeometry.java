@@ -0,0 +1,208 @@
+package wumpusworld;
+
+/**
+ * Precomputed tables for a square Wumpus World of a given size. Squares
+ * are numbered row by row, so square (x,y) has the cell index
+ * (y-1)*size + (x-1). Square (1,1) is cell 0.
+ *
+ * Instances are immutable and shared between all worlds and agents
+ * of the same size.
+ */
+public final class BoardGeometry
+{
+    private static volatile BoardGeometry[] cache = new BoardGeometry[0];
+
+    private final int size;
+    private final int cells;
+    private final int words;
+    private final long[] valid;
+    private final long[] notFirstColumn;
+    private final long[] notLastColumn;
+    private final int[][] neighbors;
+
+    /**
+     * Returns the shared geometry for a world size.
+     *
+     * @param size Size of the world
+     * @return Geometry tables
+     */
+    public static BoardGeometry of(int size)
+    {
+        BoardGeometry[] c = cache;
+        if (size < c.length && c[size] != null)
+        {
+            return c[size];
+        }
+        return create(size);
+    }
+
+    /**
+     * Creates and caches the geometry for a world size.
+     *
+     * @param size Size of the world
+     * @return Geometry tables
+     */
+    private static synchronized BoardGeometry create(int size)
+    {
+        BoardGeometry[] c = cache;
+        if (size < c.length && c[size] != null)
+        {
+            return c[size];
+        }
+        BoardGeometry[] n = new BoardGeometry[Math.max(c.length, size + 1)];
+        System.arraycopy(c, 0, n, 0, c.length);
+        n[size] = new BoardGeometry(size);
+        cache = n;
+        return n[size];
+    }
+
+    /**
+     * Creates the tables for a world size.
+     *
+     * @param size Size of the world
+     */
+    private BoardGeometry(int size)
+    {
+        if (size < 1)
+        {
+            throw new IllegalArgumentException("Invalid world size: " + size);
+        }
+        this.size = size;
+        cells = size * size;
+        words = (cells + 63) >>> 6;
+        valid = new long[words];
+        notFirstColumn = new long[words];
+        notLastColumn = new long[words];
+        neighbors = new int[cells][];
+
+        for (int i = 0; i < cells; i++)
+        {
+            long bit = 1L << i;
+            valid[i >>> 6] |= bit;
+            if (i % size != 0) notFirstColumn[i >>> 6] |= bit;
+            if (i % size != size - 1) notLastColumn[i >>> 6] |= bit;
+            
+            //Neighbors in the order left, right, up, down
+            int x = x(i);
+            int y = y(i);
+            int n = 0;
+            int[] tmp = new int[4];
+            if (x > 1) tmp[n++] = i - 1;
+            if (x < size) tmp[n++] = i + 1;
+            if (y < size) tmp[n++] = i + size;
+            if (y > 1) tmp[n++] = i - size;
+            neighbors[i] = new int[n];
+            System.arraycopy(tmp, 0, neighbors[i], 0, n);
+        }
+    }
+
+    /**
+     * Returns the size of the world.
+     *
+     * @return The size
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of squares in the world.
+     *
+     * @return Number of squares
+     */
+    public int getCells()
+    {
+        return cells;
+    }
+
+    /**
+     * Returns the number of 64-bit words needed to store one
+     * bit per square. Worlds up to 8x8 fit in a single word.
+     *
+     * @return Number of words
+     */
+    public int getWords()
+    {
+        return words;
+    }
+
+    /**
+     * Returns the cell index of a square. The position is
+     * not checked.
+     *
+     * @param x X position
+     * @param y Y position
+     * @return Cell index
+     */
+    public int index(int x, int y)
+    {
+        return (y - 1) * size + (x - 1);
+    }
+
+    /**
+     * Returns the X position of a cell index.
+     *
+     * @param cell Cell index
+     * @return X position
+     */
+    public int x(int cell)
+    {
+        return cell % size + 1;
+    }
+
+    /**
+     * Returns the Y position of a cell index.
+     *
+     * @param cell Cell index
+     * @return Y position
+     */
+    public int y(int cell)
+    {
+        return cell / size + 1;
+    }
+
+    /**
+     * Returns the cell indexes of all squares horizontally or
+     * vertically adjacent to a cell.
+     *
+     * @param cell Cell index
+     * @return Neighbor cells. The array is shared and must not be modified.
+     */
+    public int[] neighbors(int cell)
+    {
+        return neighbors[cell];
+    }
+
+    /**
+     * Mask with a bit set for every square in the world.
+     *
+     * @param word Word index
+     * @return Mask word
+     */
+    long validWord(int word)
+    {
+        return valid[word];
+    }
+
+    /**
+     * Mask with a bit set for every square except those in column 1.
+     *
+     * @return Mask words. Must not be modified.
+     */
+    long[] notFirstColumn()
+    {
+        return notFirstColumn;
+    }
+
+    /**
+     * Mask with a bit set for every square except those in the
+     * last column.
+     *
+     * @return Mask words. Must not be modified.
+     */
+    long[] notLastColumn()
+    {
+        return notLastColumn;
+    }
+}
@@ -10,7 +10,7 @@ import java.io.*;
 public class Config 
 {
     /**
-     * Checks the options for the application ('gui', 'sim' or 'simdb').
+     * Checks the options for the application ('gui', 'sim', 'simdb' or 'tournament').
      * 
      * @return Option. Default is 'gui'. 
      */
@@ -31,6 +31,7 @@ public class Config
                     if (tokens[1].equalsIgnoreCase("simulator")) option = "sim";
                     if (tokens[1].equalsIgnoreCase("simdb")) option = "simdb";
                     if (tokens[1].equalsIgnoreCase("simulatordb")) option = "simdb";
+                    if (tokens[1].equalsIgnoreCase("tournament")) option = "tournament";
                 }
                 line = r.readLine();
             }
@@ -72,4 +73,54 @@ public class Config
         }
         return mapfile;
     }
+
+    /**
+     * Returns a setting.
+     *
+     * @param key Name of the setting
+     * @param def Default value
+     * @return Value, or the default value if not found.
+     */
+    public static String getString(String key, String def)
+    {
+        String value = def;
+        try
+        {
+            BufferedReader r = new BufferedReader(new FileReader("config.txt"));
+            String line = r.readLine();
+            while (line != null)
+            {
+                if (line.startsWith(key + "="))
+                {
+                    value = line.substring(key.length() + 1).trim();
+                }
+                line = r.readLine();
+            }
+            r.close();
+        }
+        catch (Exception ex)
+        {
+            value = def;
+        }
+        return value;
+    }
+
+    /**
+     * Returns an integer setting.
+     *
+     * @param key Name of the setting
+     * @param def Default value
+     * @return Value, or the default value if not found or not a number.
+     */
+    public static int getInt(String key, int def)
+    {
+        try
+        {
+            return Integer.parseInt(getString(key, "" + def));
+        }
+        catch (NumberFormatException ex)
+        {
+            return def;
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package wumpusworld;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes one CSV line per game to a file, on a writer thread of its own.
+ *
+ * The columns are the game number, the seed of the map (-1 for maps read
+ * from a file), the score, the number of agent actions, the outcome and
+ * the decision time of the agent in milliseconds.
+ *
+ * Adding a result only puts it on a lock-free queue, so the simulation
+ * threads never wait for the file. The writer thread wakes up at a fixed
+ * interval, writes all queued results to a large buffer and flushes it
+ * to the file at most once per second, so the file can be followed while
+ * a campaign runs. The queue is not bounded: the writer is expected to
+ * be much faster than the games.
+ */
+public class CsvResultSink implements ResultSink
+{
+    private static final String[] OUTCOMES = {"won", "eaten", "stuck", "timeout"};
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long WAKE_NANOS = 10000000L;
+    private static final long FLUSH_NANOS = 1000000000L;
+
+    private final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<Record>();
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException error;
+
+    /**
+     * A queued result.
+     */
+    private static final class Record
+    {
+        final long game;
+        final long seed;
+        final int score;
+        final int actions;
+        final int outcome;
+        final long decisionNanos;
+
+        Record(long game, MapView map, GameResult r)
+        {
+            this.game = game;
+            seed = map.getSeed();
+            score = r.getScore();
+            actions = r.getActions();
+            outcome = r.getOutcome();
+            decisionNanos = r.getDecisionNanos();
+        }
+    }
+
+    /**
+     * Creates the file and starts the writer thread.
+     *
+     * @param file File to write. An existing file is replaced.
+     * @throws IOException If the file could not be created
+     */
+    public CsvResultSink(File file) throws IOException
+    {
+        out = new BufferedWriter(new FileWriter(file), BUFFER_SIZE);
+        out.write("game,seed,score,actions,outcome,decision_ms\n");
+        writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                write();
+            }
+        }, "CsvResultSink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void add(long game, MapView map, GameResult r)
+    {
+        if (closed || error != null) return;
+        queue.offer(new Record(game, map, r));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            LockSupport.unpark(writer);
+            boolean interrupted = false;
+            while (writer.isAlive())
+            {
+                try
+                {
+                    writer.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (error != null) throw error;
+    }
+
+    /**
+     * Writes queued results until the sink is closed, then writes the
+     * rest and closes the file.
+     */
+    private void write()
+    {
+        StringBuilder line = new StringBuilder(64);
+        long lastFlush = System.nanoTime();
+        boolean pending = false;
+        try
+        {
+            while (true)
+            {
+                boolean last = closed;
+                Record r;
+                while ((r = queue.poll()) != null)
+                {
+                    line.setLength(0);
+                    line.append(r.game).append(',').append(r.seed).append(',')
+                            .append(r.score).append(',').append(r.actions).append(',')
+                            .append(OUTCOMES[r.outcome]).append(',')
+                            .append(r.decisionNanos / 1000000.0).append('\n');
+                    out.append(line);
+                    pending = true;
+                }
+                if (last) break;
+                long now = System.nanoTime();
+                if (pending && now - lastFlush >= FLUSH_NANOS)
+                {
+                    out.flush();
+                    lastFlush = now;
+                    pending = false;
+                }
+                LockSupport.parkNanos(WAKE_NANOS);
+            }
+        }
+        catch (IOException ex)
+        {
+            error = ex;
+        }
+        finally
+        {
+            try
+            {
+                out.close();
+            }
+            catch (IOException ex)
+            {
+                if (error == null) error = ex;
+            }
+        }
+    }
+}
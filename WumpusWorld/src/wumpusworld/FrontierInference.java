@@ -0,0 +1,936 @@
+package wumpusworld;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exact pit and Wumpus inference over the frontier, i.e. the unknown
+ * squares next to visited squares.
+ *
+ * The frontier is split into independent components. Two frontier squares
+ * belong to the same component if they share a visited neighbor, since
+ * only then can the breeze percept of one square depend on both. Each
+ * component is enumerated on its own and the results are combined by
+ * convolving the per-component pit counts, so the cost grows with the
+ * largest component instead of the whole frontier.
+ *
+ * The observations are compiled once per turn with compile(). A square
+ * next to a visited square without breeze can not have a pit and is left
+ * out of the enumeration. For the remaining (free) squares of a component,
+ * each breeze that is not explained by a known pit becomes a mask of the
+ * free squares that could cause it. Pit hypotheses are then enumerated as
+ * integer subsets with Gosper's hack, ordered by number of pits, and a
+ * hypothesis is consistent if it intersects every mask. Nothing is
+ * allocated per hypothesis.
+ *
+ * The counts of each component are kept in a Component object, so a
+ * caller that tracks which components are affected by new observations
+ * (see BeliefState) can count only those and combine them with the
+ * counts it already has.
+ *
+ * Components with more free squares than another threshold are enumerated
+ * in parallel. The free squares with the highest local index are fixed
+ * to all their pit combinations, which splits the hypotheses into
+ * ranges. Each range is enumerated by a fork/join task into its own
+ * counts, and the counts are added up when the tasks are joined. Breezes
+ * explained by the fixed pits are left out of the range, and a range is
+ * skipped if a breeze can not be explained by the remaining squares.
+ *
+ * Components with more free squares than a threshold can be sampled
+ * instead of enumerated, see MonteCarloInference. Their probabilities
+ * are then estimates, and combine() can also return a confidence
+ * interval for each probability.
+ *
+ * Counting can be given a deadline. Enumeration then checks the time
+ * every few thousand hypotheses and throws a DeadlineException when the
+ * deadline has passed, and sampling stops at the deadline.
+ *
+ * The prior is the one MapGenerator uses: a fixed number of pits in
+ * distinct squares and exactly one Wumpus, each placed uniformly over all
+ * squares except the start square. The pits that have not been found are
+ * in the unvisited squares, either in the frontier or in the hidden
+ * squares behind it, where no percept says anything about them. If the
+ * frontier has k of p remaining pits, the other p-k can be placed in the
+ * hidden squares in C(hidden, p-k) ways, which is the weight of k when
+ * the pit counts of the components are combined. The Wumpus is in a
+ * frontier square that matches the stench percepts, or in any hidden
+ * square if there is no stench.
+ *
+ * If the number of pits is not known, for maps that were not made by
+ * MapGenerator, each square has a pit independently with probability
+ * PIT_PRIOR instead, and k frontier pits have weight
+ * PIT_PRIOR^k (1-PIT_PRIOR)^(n-k). The pit counts are then passed as
+ * UNKNOWN_PITS.
+ *
+ * Pits and the Wumpus are placed independently, and breezes only depend
+ * on the pits and stenches only on the Wumpus. The number of consistent
+ * joint configurations is therefore the product of the pit and the Wumpus
+ * counts, and the joint posterior of a square is given by the two
+ * marginals, see danger().
+ */
+public class FrontierInference
+{
+    /**
+     * Fraction of the squares with a pit, not counting the start square.
+     * MapGenerator places 3 pits in the 15 squares of a 4x4 world.
+     */
+    public static final double PIT_PRIOR = 0.2;
+
+    /**
+     * Number of pits that have not been found, when the number of pits
+     * in the world is not known.
+     */
+    public static final int UNKNOWN_PITS = -1;
+
+    /**
+     * Maximum number of free squares in one enumerated component. Subsets
+     * of the free squares are stored in a long. Larger components must be
+     * sampled.
+     */
+    public static final int MAX_COMPONENT = 62;
+
+    //Number of ranges per pool thread when a component is enumerated in parallel
+    private static final int RANGES_PER_THREAD = 8;
+
+    //The time is checked when the hypothesis count has these bits 0
+    private static final int DEADLINE_CHECK_MASK = 0xFFF;
+
+    private final BoardGeometry g;
+
+    //Precomputed table, logFactorial[k] = ln(k!)
+    private final double[] logFactorial;
+
+    //Union-find parents used when splitting the frontier
+    private final int[] parent;
+    //Frontier cells grouped by component. Within a component the free
+    //cells come first, followed by cells that can not have a pit.
+    private final int[] cells;
+    //Component i has cells[compStart[i]] to cells[compStart[i+1]-1]
+    private final int[] compStart;
+    private final int[] freeCount;
+    private final boolean[] feasible;
+    //Breeze masks over the free cells of each component, and the free
+    //cells of each breeze as local indexes (4 per breeze, padded with -1)
+    private final long[] need;
+    private final int[] needCells;
+    private final int[] needStart;
+    private int components;
+    private BitBoard visited;
+    private MonteCarloInference sampler;
+    private ForkJoinPool pool;
+    private int parallelThreshold;
+    private boolean timed;
+    private long deadline;
+
+    //Scratch
+    private final int[] mark;
+    private int markId;
+    private final int[] local;
+
+    /**
+     * Thrown when counting is stopped by the deadline.
+     */
+    static final class DeadlineException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineException()
+        {
+            super("Deadline passed", null, false, false);
+        }
+    }
+
+    /**
+     * Pit counts of one frontier component.
+     */
+    static final class Component
+    {
+        /**
+         * Frontier cells in the component
+         */
+        final int[] cells;
+        /**
+         * Maximum number of pits the component was counted for
+         */
+        final int cap;
+        /**
+         * count[k] is the number of consistent hypotheses with k pits
+         */
+        final double[] count;
+        /**
+         * cellCount[i*count.length+k] is the number of consistent
+         * hypotheses with k pits and a pit in cells[i]
+         */
+        final double[] cellCount;
+        /**
+         * Counts of each batch of samples, or null if the
+         * component was enumerated
+         */
+        Component[] batches;
+
+        Component(int[] cells, int cap)
+        {
+            this.cells = cells;
+            this.cap = cap;
+            count = new double[cap + 1];
+            cellCount = new double[cells.length * (cap + 1)];
+        }
+
+        /**
+         * Checks if the component must be counted again for a
+         * higher maximum number of pits.
+         *
+         * @param maxPits Maximum number of pits in the frontier, or UNKNOWN_PITS
+         * @return True if the counts are complete for maxPits
+         */
+        boolean covers(int maxPits)
+        {
+            return cap >= cap(maxPits, cells.length);
+        }
+    }
+
+    /**
+     * Creates a new inference engine.
+     *
+     * @param size Size of the world
+     */
+    public FrontierInference(int size)
+    {
+        g = BoardGeometry.of(size);
+        int n = g.getCells();
+        logFactorial = new double[n + 1];
+        for (int k = 2; k <= n; k++)
+        {
+            logFactorial[k] = logFactorial[k - 1] + Math.log(k);
+        }
+        parent = new int[n];
+        cells = new int[n];
+        compStart = new int[n + 1];
+        freeCount = new int[n];
+        feasible = new boolean[n];
+        need = new long[n];
+        needCells = new int[n * 4];
+        needStart = new int[n + 1];
+        mark = new int[n];
+        local = new int[n];
+    }
+
+    /**
+     * Sets the sampler used for large components.
+     *
+     * @param sampler Sampler, or null to enumerate all components
+     */
+    public void setSampler(MonteCarloInference sampler)
+    {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Sets when components are enumerated in parallel on the common
+     * fork/join pool.
+     *
+     * @param threshold Components with more free squares than this are enumerated in parallel, 0 to never
+     */
+    public void setParallelism(int threshold)
+    {
+        parallelThreshold = threshold;
+        pool = threshold > 0 ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Sets the deadline for counting. Must be called before compile(),
+     * since the sampling budget starts there.
+     *
+     * @param deadlineNanos Deadline as a System.nanoTime() value
+     */
+    public void setDeadline(long deadlineNanos)
+    {
+        timed = true;
+        deadline = deadlineNanos;
+    }
+
+    /**
+     * Removes the deadline for counting.
+     */
+    public void clearDeadline()
+    {
+        timed = false;
+    }
+
+    /**
+     * Compiles the current pit observations. Must be called before the
+     * pit probabilities are calculated, and again when the observations
+     * have changed.
+     *
+     * The frontier can also be a part of the real frontier, as long as
+     * it is a union of whole components.
+     *
+     * @param visited Visited squares
+     * @param breeze Visited squares with a breeze
+     * @param knownPits Visited squares with a pit
+     * @param frontier Frontier squares
+     */
+    public void compile(BitBoard visited, BitBoard breeze, BitBoard knownPits, BitBoard frontier)
+    {
+        this.visited = visited;
+        split(visited, frontier);
+
+        int m = 0;
+        int sampled = 0;
+        for (int c = 0; c < components; c++)
+        {
+            needStart[c] = m;
+            feasible[c] = true;
+
+            //Free cells first, then the cells next to a visited square without breeze
+            int lo = compStart[c];
+            int hi = compStart[c + 1];
+            int f = lo;
+            for (int i = lo; i < hi; i++)
+            {
+                if (!nextToCalm(cells[i], breeze))
+                {
+                    int t = cells[f];
+                    cells[f] = cells[i];
+                    cells[i] = t;
+                    f++;
+                }
+            }
+            freeCount[c] = f - lo;
+            if (isSampled(c))
+            {
+                sampled++;
+            }
+            else if (freeCount[c] > MAX_COMPONENT)
+            {
+                throw new IllegalStateException("Frontier component too large: " + freeCount[c]);
+            }
+            for (int i = lo; i < hi; i++)
+            {
+                local[cells[i]] = i - lo;
+            }
+
+            //One mask for each breeze not explained by a known pit
+            markId++;
+            for (int i = lo; i < hi; i++)
+            {
+                for (int v : g.neighbors(cells[i]))
+                {
+                    if (!visited.get(v) || mark[v] == markId) continue;
+                    mark[v] = markId;
+
+                    boolean knownPit = false;
+                    long mask = 0;
+                    int j = 0;
+                    for (int o : g.neighbors(v))
+                    {
+                        if (knownPits.get(o)) knownPit = true;
+                        if (frontier.get(o) && local[o] < freeCount[c])
+                        {
+                            mask |= 1L << local[o];
+                            needCells[m * 4 + j++] = local[o];
+                        }
+                    }
+                    if (!breeze.get(v))
+                    {
+                        if (knownPit) feasible[c] = false;
+                    }
+                    else if (!knownPit)
+                    {
+                        if (j == 0) feasible[c] = false;
+                        while (j < 4)
+                        {
+                            needCells[m * 4 + j++] = -1;
+                        }
+                        need[m++] = mask;
+                    }
+                }
+            }
+        }
+        needStart[components] = m;
+        if (sampler != null) sampler.startDecision(sampled, timed, deadline);
+    }
+
+    /**
+     * Returns the number of components found by the last compile().
+     *
+     * @return Number of components
+     */
+    public int getComponentCount()
+    {
+        return components;
+    }
+
+    /**
+     * Calculates the probability that each frontier square has a pit.
+     * The last compile() must have been given the whole frontier.
+     *
+     * @param pits Number of pits that have not been found, or UNKNOWN_PITS
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     */
+    public void pitProbabilities(int pits, double[] probabilities)
+    {
+        Component[] comps = new Component[components];
+        for (int c = 0; c < components; c++)
+        {
+            comps[c] = count(c, pits);
+        }
+        int hidden = g.getCells() - visited.cardinality() - compStart[components];
+        combine(comps, components, pits, hidden, probabilities);
+    }
+
+    /**
+     * Counts the consistent pit hypotheses of one compiled component.
+     *
+     * @param c Component index
+     * @param maxPits Maximum number of pits in the frontier, or UNKNOWN_PITS
+     * @return Pit counts of the component
+     * @throws DeadlineException If the deadline passed before the component was enumerated
+     */
+    Component count(int c, int maxPits)
+    {
+        int lo = compStart[c];
+        int n = compStart[c + 1] - lo;
+        int[] cc = new int[n];
+        System.arraycopy(cells, lo, cc, 0, n);
+        int cap = cap(maxPits, n);
+        if (feasible[c] && isSampled(c))
+        {
+            return sampler.sample(cc, freeCount[c], cap, needCells, needStart[c], needStart[c + 1]);
+        }
+        Component comp = new Component(cc, cap);
+        if (feasible[c]) enumerate(c, comp);
+        return comp;
+    }
+
+    /**
+     * Checks if a compiled component is sampled instead of enumerated.
+     *
+     * @param c Component index
+     * @return True if the component is sampled
+     */
+    private boolean isSampled(int c)
+    {
+        return sampler != null && freeCount[c] > sampler.getThreshold();
+    }
+
+    /**
+     * Combines the pit counts of all frontier components into the
+     * probability that each frontier square has a pit, and estimates
+     * a 95% confidence interval for each probability. The probabilities
+     * are calculated once for each batch of samples, and the interval is
+     * given by the spread of the batch results. Probabilities that do
+     * not depend on a sampled component get an interval of 0.
+     *
+     * @param comps Components
+     * @param size Number of components
+     * @param pits Number of pits that have not been found, or UNKNOWN_PITS
+     * @param hidden Number of unvisited squares outside the frontier
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     * @param halfWidths Output, half-width of the interval, indexed by cell. Only frontier cells are written.
+     */
+    void combine(Component[] comps, int size, int pits, int hidden, double[] probabilities, double[] halfWidths)
+    {
+        combine(comps, size, pits, hidden, probabilities);
+
+        int batches = Integer.MAX_VALUE;
+        for (int c = 0; c < size; c++)
+        {
+            for (int cell : comps[c].cells)
+            {
+                halfWidths[cell] = 0;
+            }
+            if (comps[c].batches != null) batches = Math.min(batches, comps[c].batches.length);
+        }
+        if (batches == Integer.MAX_VALUE || batches < 2) return;
+
+        Component[] batch = new Component[size];
+        double[] p = new double[g.getCells()];
+        double[] sum = new double[g.getCells()];
+        double[] sumSq = new double[g.getCells()];
+        for (int b = 0; b < batches; b++)
+        {
+            for (int c = 0; c < size; c++)
+            {
+                batch[c] = comps[c].batches != null ? comps[c].batches[b] : comps[c];
+            }
+            combine(batch, size, pits, hidden, p);
+            for (int c = 0; c < size; c++)
+            {
+                for (int cell : comps[c].cells)
+                {
+                    sum[cell] += p[cell];
+                    sumSq[cell] += p[cell] * p[cell];
+                }
+            }
+        }
+        for (int c = 0; c < size; c++)
+        {
+            for (int cell : comps[c].cells)
+            {
+                double mean = sum[cell] / batches;
+                double var = Math.max(0, (sumSq[cell] - batches * mean * mean) / (batches - 1));
+                halfWidths[cell] = MonteCarloInference.T_95 * Math.sqrt(var / batches);
+            }
+        }
+    }
+
+    /**
+     * Combines the pit counts of all frontier components into the
+     * probability that each frontier square has a pit.
+     *
+     * @param comps Components
+     * @param size Number of components
+     * @param pits Number of pits that have not been found, or UNKNOWN_PITS
+     * @param hidden Number of unvisited squares outside the frontier
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     */
+    void combine(Component[] comps, int size, int pits, int hidden, double[] probabilities)
+    {
+        int n = 0;
+        for (int c = 0; c < size; c++)
+        {
+            n += comps[c].cells.length;
+        }
+        int cap = cap(pits, n);
+        int w = cap + 1;
+
+        //Prior weight for a total number of frontier pits, the number of
+        //ways to place the other pits in the hidden squares, or the
+        //independent prior if the number of pits is not known
+        double[] weight = new double[w];
+        double maxLog = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k <= cap; k++)
+        {
+            if (pits == UNKNOWN_PITS) weight[k] = k * Math.log(PIT_PRIOR) + (n - k) * Math.log(1 - PIT_PRIOR);
+            else weight[k] = logBinomial(hidden, pits - k);
+            maxLog = Math.max(maxLog, weight[k]);
+        }
+        for (int k = 0; k <= cap; k++)
+        {
+            weight[k] = maxLog > Double.NEGATIVE_INFINITY ? Math.exp(weight[k] - maxLog) : 0;
+        }
+
+        //Pit count distributions of the components before and after each component
+        double[][] prefix = new double[size + 1][];
+        double[][] suffix = new double[size + 1][];
+        prefix[0] = unit(w);
+        suffix[size] = unit(w);
+        for (int c = 0; c < size; c++)
+        {
+            prefix[c + 1] = convolve(prefix[c], comps[c].count);
+        }
+        for (int c = size - 1; c >= 0; c--)
+        {
+            suffix[c] = convolve(suffix[c + 1], comps[c].count);
+        }
+
+        double[] others = new double[w];
+        double[] tail = new double[w];
+        for (int c = 0; c < size; c++)
+        {
+            Component comp = comps[c];
+            int cw = comp.count.length;
+
+            //tail[k] is the total weight of all other components when
+            //this component has k pits
+            Arrays.fill(others, 0);
+            for (int i = 0; i < w; i++)
+            {
+                for (int j = 0; i + j < w; j++)
+                {
+                    others[i + j] += prefix[c][i] * suffix[c + 1][j];
+                }
+            }
+            double total = 0;
+            for (int k = 0; k <= cap && k < cw; k++)
+            {
+                tail[k] = 0;
+                for (int j = 0; j + k <= cap; j++)
+                {
+                    tail[k] += others[j] * weight[j + k];
+                }
+                total += comp.count[k] * tail[k];
+            }
+
+            for (int i = 0; i < comp.cells.length; i++)
+            {
+                double hasPit = 0;
+                for (int k = 1; k <= cap && k < cw; k++)
+                {
+                    hasPit += comp.cellCount[i * cw + k] * tail[k];
+                }
+                probabilities[comp.cells[i]] = total > 0 ? hasPit / total : 0;
+            }
+        }
+    }
+
+    /**
+     * Calculates the probability that each frontier square has the
+     * Wumpus. The Wumpus is in a frontier square if its visited
+     * neighbors are exactly the stench squares, and it can only be in a
+     * hidden square if there is no stench.
+     *
+     * @param visited Visited squares
+     * @param stench Visited squares with a stench
+     * @param frontier Frontier squares
+     * @param probabilities Output, indexed by cell. Only frontier cells are written.
+     */
+    public void wumpusProbabilities(BitBoard visited, BitBoard stench, BitBoard frontier, double[] probabilities)
+    {
+        int stenchCount = stench.cardinality();
+        int n = frontier.cardinality();
+        int hidden = g.getCells() - visited.cardinality() - n;
+
+        //Each consistent Wumpus square has the same weight
+        int total = stenchCount == 0 ? hidden : 0;
+        for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+        {
+            if (matchStench(f, visited, stench, stenchCount)) total++;
+        }
+        for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+        {
+            probabilities[f] = total > 0 && matchStench(f, visited, stench, stenchCount) ? 1.0 / total : 0;
+        }
+    }
+
+    /**
+     * Returns the probability that a square has a pit or the Wumpus.
+     * Since pits and the Wumpus are placed independently and explain
+     * different percepts, the joint posterior is the product of the
+     * marginals.
+     *
+     * @param pit Probability of a pit
+     * @param wumpus Probability of the Wumpus
+     * @return Probability of a pit, the Wumpus or both
+     */
+    public static double danger(double pit, double wumpus)
+    {
+        return 1 - (1 - pit) * (1 - wumpus);
+    }
+
+    /**
+     * Checks if the Wumpus in a frontier cell matches all stench
+     * percepts next to the frontier.
+     *
+     * @param f Frontier cell
+     * @param visited Visited squares
+     * @param stench Visited squares with a stench
+     * @param stenchCount Number of stench squares
+     * @return True if the percepts match
+     */
+    private boolean matchStench(int f, BitBoard visited, BitBoard stench, int stenchCount)
+    {
+        int s = 0;
+        for (int v : g.neighbors(f))
+        {
+            if (!visited.get(v)) continue;
+            if (!stench.get(v)) return false;
+            s++;
+        }
+        return s == stenchCount;
+    }
+
+    /**
+     * Checks if a cell is next to a visited cell without breeze.
+     *
+     * @param f Cell index
+     * @param breeze Visited squares with a breeze
+     * @return True if the cell can not have a pit
+     */
+    private boolean nextToCalm(int f, BitBoard breeze)
+    {
+        for (int v : g.neighbors(f))
+        {
+            if (visited.get(v) && !breeze.get(v)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Enumerates the pit hypotheses of a component and counts the
+     * consistent ones, in parallel if the component is large.
+     *
+     * @param c Component index
+     * @param comp Counts to fill in
+     */
+    private void enumerate(int c, Component comp)
+    {
+        int free = freeCount[c];
+        if (pool == null || free <= parallelThreshold)
+        {
+            enumerate(c, comp.cap, free, 0, 0, comp.count, comp.cellCount);
+            return;
+        }
+
+        int split = 32 - Integer.numberOfLeadingZeros(pool.getParallelism() * RANGES_PER_THREAD - 1);
+        EnumerateTask task = new EnumerateTask(c, comp.cap, free, Math.max(1, free - split), 0, 0);
+        pool.invoke(task);
+        add(task.count, comp.count);
+        add(task.cellCount, comp.cellCount);
+    }
+
+    /**
+     * Enumerates the pit hypotheses of a range in order of increasing
+     * number of pits, and counts the consistent ones. In the range, the
+     * pits in the free cells from local index bits up are given.
+     *
+     * @param c Component index
+     * @param cap Maximum number of pits in the component
+     * @param bits Number of free cells that are enumerated, the lowest local indexes
+     * @param high Pits in the other free cells
+     * @param highK Number of pits in high
+     * @param count Output, must be 0
+     * @param cellCount Output, must be 0
+     */
+    private void enumerate(int c, int cap, int bits, long high, int highK, double[] count, double[] cellCount)
+    {
+        int m0 = needStart[c];
+        int m1 = needStart[c + 1];
+        int w = cap + 1;
+        long end = 1L << bits;
+
+        //Breezes that the given pits do not explain
+        long[] open = new long[m1 - m0];
+        int m = 0;
+        for (int i = m0; i < m1; i++)
+        {
+            if ((need[i] & high) != 0) continue;
+            long mask = need[i] & (end - 1);
+            if (mask == 0) return;
+            open[m++] = mask;
+        }
+
+        int max = Math.min(cap - highK, bits);
+        int checked = 0;
+        for (int k = 0; k <= max; k++)
+        {
+            long s = (1L << k) - 1;
+            while (s < end)
+            {
+                if ((++checked & DEADLINE_CHECK_MASK) == 0 && timed && System.nanoTime() - deadline > 0)
+                {
+                    throw new DeadlineException();
+                }
+                boolean ok = true;
+                for (int i = 0; i < m; i++)
+                {
+                    if ((s & open[i]) == 0)
+                    {
+                        ok = false;
+                        break;
+                    }
+                }
+                if (ok)
+                {
+                    count[highK + k]++;
+                    for (long b = s; b != 0; b &= b - 1)
+                    {
+                        cellCount[Long.numberOfTrailingZeros(b) * w + highK + k]++;
+                    }
+                }
+                if (s == 0) break;
+
+                //Gosper's hack: next subset with the same number of bits
+                long low = s & -s;
+                long r = s + low;
+                s = (((r ^ s) >>> 2) / low) | r;
+            }
+        }
+
+        //Every consistent hypothesis has the given pits
+        for (long b = high; b != 0; b &= b - 1)
+        {
+            int i = Long.numberOfTrailingZeros(b);
+            for (int k = highK; k < w; k++)
+            {
+                cellCount[i * w + k] += count[k];
+            }
+        }
+    }
+
+    /**
+     * Counts the hypotheses of a range, split into two ranges by the pit
+     * in the free cell with the highest local index until the ranges
+     * are small enough.
+     */
+    private final class EnumerateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int c;
+        final int cap;
+        final int bits;
+        final int leafBits;
+        final long high;
+        final int highK;
+        double[] count;
+        double[] cellCount;
+
+        EnumerateTask(int c, int cap, int bits, int leafBits, long high, int highK)
+        {
+            this.c = c;
+            this.cap = cap;
+            this.bits = bits;
+            this.leafBits = leafBits;
+            this.high = high;
+            this.highK = highK;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int w = cap + 1;
+            count = new double[w];
+            cellCount = new double[(compStart[c + 1] - compStart[c]) * w];
+            if (bits <= leafBits)
+            {
+                enumerate(c, cap, bits, high, highK, count, cellCount);
+                return;
+            }
+
+            int b = bits - 1;
+            EnumerateTask noPit = new EnumerateTask(c, cap, b, leafBits, high, highK);
+            if (highK == cap)
+            {
+                noPit.compute();
+            }
+            else
+            {
+                EnumerateTask pit = new EnumerateTask(c, cap, b, leafBits, high | 1L << b, highK + 1);
+                invokeAll(noPit, pit);
+                add(pit.count, count);
+                add(pit.cellCount, cellCount);
+            }
+            add(noPit.count, count);
+            add(noPit.cellCount, cellCount);
+        }
+    }
+
+    /**
+     * Splits the frontier into components.
+     *
+     * @param visited Visited squares
+     * @param frontier Frontier squares
+     */
+    private void split(BitBoard visited, BitBoard frontier)
+    {
+        for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+        {
+            parent[f] = f;
+        }
+        for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+        {
+            for (int v : g.neighbors(f))
+            {
+                if (!visited.get(v)) continue;
+                for (int o : g.neighbors(v))
+                {
+                    if (o != f && frontier.get(o)) union(f, o);
+                }
+            }
+        }
+
+        //Group the cells by their root
+        components = 0;
+        int n = 0;
+        for (int r = frontier.nextSetBit(0); r >= 0; r = frontier.nextSetBit(r + 1))
+        {
+            if (find(r) != r) continue;
+            compStart[components++] = n;
+            for (int f = r; f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                if (find(f) == r) cells[n++] = f;
+            }
+        }
+        compStart[components] = n;
+    }
+
+    /**
+     * Returns the highest number of pits that must be counted in a set
+     * of frontier squares.
+     *
+     * @param pits Number of pits that have not been found, or UNKNOWN_PITS
+     * @param n Number of squares
+     * @return Maximum number of pits in the squares
+     */
+    static int cap(int pits, int n)
+    {
+        if (pits == UNKNOWN_PITS) return n;
+        return Math.max(0, Math.min(pits, n));
+    }
+
+    /**
+     * Returns ln C(n, k), or negative infinity if k is out of range.
+     */
+    private double logBinomial(int n, int k)
+    {
+        if (k < 0 || k > n) return Double.NEGATIVE_INFINITY;
+        return logFactorial[n] - logFactorial[k] - logFactorial[n - k];
+    }
+
+    /**
+     * Returns the pit count distribution of an empty set of components.
+     */
+    private static double[] unit(int w)
+    {
+        double[] u = new double[w];
+        u[0] = 1;
+        return u;
+    }
+
+    /**
+     * Convolves a pit count distribution with the counts of a
+     * component, dropping counts above the maximum number of pits.
+     */
+    private static double[] convolve(double[] a, double[] b)
+    {
+        double[] r = new double[a.length];
+        for (int i = 0; i < a.length; i++)
+        {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length && i + j < r.length; j++)
+            {
+                r[i + j] += a[i] * b[j];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Adds an array to another, element by element.
+     */
+    private static void add(double[] a, double[] sum)
+    {
+        for (int i = 0; i < sum.length; i++)
+        {
+            sum[i] += a[i];
+        }
+    }
+
+    /**
+     * Finds the component root of a frontier cell.
+     */
+    private int find(int c)
+    {
+        while (parent[c] != c)
+        {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    /**
+     * Merges the components of two frontier cells. The lowest
+     * cell index becomes the root.
+     */
+    private void union(int a, int b)
+    {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra < rb) parent[rb] = ra;
+        else if (rb < ra) parent[ra] = rb;
+    }
+}
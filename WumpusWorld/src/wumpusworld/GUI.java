@@ -216,32 +216,32 @@ public class GUI implements ActionListener
     {
         if (e.getActionCommand().equals("TL"))
         {
-            w.doAction(World.A_TURN_LEFT);
+            w.doAction(World.OP_TURN_LEFT);
             updateGame();
         }
         if (e.getActionCommand().equals("TR"))
         {
-            w.doAction(World.A_TURN_RIGHT);
+            w.doAction(World.OP_TURN_RIGHT);
             updateGame();
         }
         if (e.getActionCommand().equals("MF"))
         {
-            w.doAction(World.A_MOVE);
+            w.doAction(World.OP_MOVE);
             updateGame();
         }
         if (e.getActionCommand().equals("GRAB"))
         {
-            w.doAction(World.A_GRAB);
+            w.doAction(World.OP_GRAB);
             updateGame();
         }
         if (e.getActionCommand().equals("CLIMB"))
         {
-            w.doAction(World.A_CLIMB);
+            w.doAction(World.OP_CLIMB);
             updateGame();
         }
         if (e.getActionCommand().equals("SHOOT"))
         {
-            w.doAction(World.A_SHOOT);
+            w.doAction(World.OP_SHOOT);
             updateGame();
         }
         if (e.getActionCommand().equals("NEW"))
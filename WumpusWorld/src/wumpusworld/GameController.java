@@ -0,0 +1,246 @@
+package wumpusworld;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Plays one game with the solver agent, and stops games that do not end.
+ *
+ * A game is stopped as STUCK when the agent has been asked to act a
+ * maximum number of times, for example when it moves back and forth
+ * without exploring, and as TIMEOUT when the game has run longer than a
+ * maximum time. The time is checked between actions. An AnytimeAgent is
+ * also given the end of the game as the latest deadline of each decision,
+ * so a slow decision is cut short instead of holding up the worker that
+ * runs the game.
+ *
+ * An agent that does not return from a decision is stopped by a
+ * watchdog. When there is a time limit, the game runs on a game thread
+ * while the calling thread waits for it. If the game has not ended a
+ * grace period after the time limit, it is abandoned as TIMEOUT with the
+ * score and actions it had reached, and the game thread is interrupted.
+ * An abandoned game stops at its next action. The world of an abandoned
+ * game may still be changed by the game thread, so it must not be used
+ * after play returns.
+ *
+ * A controller has no state of its own, so one controller can be shared
+ * by all worker threads.
+ */
+public class GameController
+{
+    //Time the watchdog waits after the time limit before it abandons a game
+    static final long WATCHDOG_GRACE_MILLIS = 1000;
+
+    //Threads that run games with a time limit, shared by all controllers
+    private static final ExecutorService games = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(r, "GameController");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final int maxActions;
+    private final long timeoutMillis;
+
+    /**
+     * Creates a new controller.
+     *
+     * @param maxActions Number of agent actions after which a game is stuck, 0 for no limit
+     * @param timeoutMillis Time after which a game is timed out in milliseconds, 0 for no limit
+     */
+    public GameController(int maxActions, long timeoutMillis)
+    {
+        this.maxActions = maxActions;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates a controller with the limits from the MaxActions and
+     * GameTimeMillis settings in config.txt.
+     *
+     * @return New controller
+     */
+    public static GameController fromConfig()
+    {
+        return new GameController(Config.getInt("MaxActions", 1000), Config.getInt("GameTimeMillis", 60000));
+    }
+
+    /**
+     * Returns the number of agent actions after which a game is stuck.
+     *
+     * @return Number of actions, 0 for no limit
+     */
+    public int getMaxActions()
+    {
+        return maxActions;
+    }
+
+    /**
+     * Returns the time after which a game is timed out.
+     *
+     * @return Time in milliseconds, 0 for no limit
+     */
+    public long getTimeoutMillis()
+    {
+        return timeoutMillis;
+    }
+
+    /**
+     * Runs the solver agent for the specified Wumpus World until the
+     * game is over or stopped.
+     *
+     * @param w Wumpus World
+     * @return Result of the game
+     */
+    public GameResult play(World w)
+    {
+        AgentOptions options = AgentOptions.getDefault();
+        return play(w, new MyAgent(w, options), options.getDecisionTimeMillis());
+    }
+
+    /**
+     * Runs an agent until the game is over or stopped. With a time limit
+     * the game runs on a game thread, and is abandoned if it does not end
+     * in time.
+     *
+     * @param w Wumpus World
+     * @param a Agent that plays in w
+     * @param decisionTimeMillis Time per decision given to an AnytimeAgent, 0 for no limit
+     * @return Result of the game
+     */
+    public GameResult play(final World w, final Agent a, final int decisionTimeMillis)
+    {
+        final Progress p = new Progress();
+        if (timeoutMillis <= 0) return run(w, a, decisionTimeMillis, p);
+
+        Future<GameResult> f = games.submit(new Callable<GameResult>()
+        {
+            @Override
+            public GameResult call()
+            {
+                return run(w, a, decisionTimeMillis, p);
+            }
+        });
+        try
+        {
+            return f.get(timeoutMillis + WATCHDOG_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+            p.abandon();
+            f.cancel(true);
+            return p.result(GameResult.TIMEOUT);
+        }
+        catch (InterruptedException ex)
+        {
+            p.abandon();
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a game", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Runs an agent until the game is over, stopped or abandoned.
+     *
+     * @param w Wumpus World
+     * @param a Agent that plays in w
+     * @param decisionTimeMillis Time per decision given to an AnytimeAgent, 0 for no limit
+     * @param p Progress of the game, updated after each action
+     * @return Result of the game
+     */
+    private GameResult run(World w, Agent a, int decisionTimeMillis, Progress p)
+    {
+        AnytimeAgent anytime = a instanceof AnytimeAgent ? (AnytimeAgent)a : null;
+        long end = System.nanoTime() + timeoutMillis * 1000000L;
+        int actions = 0;
+        int pitFalls = 0;
+        long decisionNanos = 0;
+        while (!w.gameOver() && !p.isAbandoned())
+        {
+            if (maxActions > 0 && actions >= maxActions)
+            {
+                return new GameResult(GameResult.STUCK, w.getScore(), actions, pitFalls, decisionNanos);
+            }
+            long now = System.nanoTime();
+            if (timeoutMillis > 0 && now - end >= 0)
+            {
+                return new GameResult(GameResult.TIMEOUT, w.getScore(), actions, pitFalls, decisionNanos);
+            }
+
+            boolean wasInPit = w.isInPit();
+            if (anytime != null && timeoutMillis > 0)
+            {
+                long deadline = end;
+                if (decisionTimeMillis > 0 && now + decisionTimeMillis * 1000000L - end < 0)
+                {
+                    deadline = now + decisionTimeMillis * 1000000L;
+                }
+                anytime.doAction(deadline);
+            }
+            else
+            {
+                a.doAction();
+            }
+            decisionNanos += System.nanoTime() - now;
+            actions++;
+            if (w.isInPit() && !wasInPit) pitFalls++;
+            p.update(w.getScore(), actions, pitFalls, decisionNanos);
+        }
+        if (p.isAbandoned()) return p.result(GameResult.TIMEOUT);
+        return new GameResult(w.hasGold() ? GameResult.WON : GameResult.EATEN, w.getScore(), actions, pitFalls, decisionNanos);
+    }
+
+    /**
+     * The score and counts of a game after its last action, which the
+     * watchdog reports when it abandons the game.
+     */
+    private static final class Progress
+    {
+        private int score;
+        private int actions;
+        private int pitFalls;
+        private long decisionNanos;
+        private volatile boolean abandoned;
+
+        synchronized void update(int score, int actions, int pitFalls, long decisionNanos)
+        {
+            this.score = score;
+            this.actions = actions;
+            this.pitFalls = pitFalls;
+            this.decisionNanos = decisionNanos;
+        }
+
+        synchronized GameResult result(int outcome)
+        {
+            return new GameResult(outcome, score, actions, pitFalls, decisionNanos);
+        }
+
+        void abandon()
+        {
+            abandoned = true;
+        }
+
+        boolean isAbandoned()
+        {
+            return abandoned;
+        }
+    }
+}
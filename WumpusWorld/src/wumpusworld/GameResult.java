@@ -0,0 +1,106 @@
+package wumpusworld;
+
+/**
+ * The result of one simulated game.
+ */
+public class GameResult
+{
+    /**
+     * The agent grabbed the gold.
+     */
+    public static final int WON = 0;
+
+    /**
+     * The agent was eaten by the Wumpus.
+     */
+    public static final int EATEN = 1;
+
+    /**
+     * The game was stopped after the maximum number of agent actions.
+     */
+    public static final int STUCK = 2;
+
+    /**
+     * The game was stopped after the maximum time.
+     */
+    public static final int TIMEOUT = 3;
+
+    /**
+     * Number of outcomes.
+     */
+    public static final int OUTCOMES = 4;
+
+    private final int outcome;
+    private final int score;
+    private final int actions;
+    private final int pitFalls;
+    private final long decisionNanos;
+
+    /**
+     * Creates a new result.
+     *
+     * @param outcome How the game ended, WON, EATEN, STUCK or TIMEOUT
+     * @param score Score at the end of the game
+     * @param actions Number of times the agent was asked to act
+     * @param pitFalls Number of times the agent fell into a pit
+     * @param decisionNanos Time the agent spent in doAction, in nanoseconds
+     */
+    public GameResult(int outcome, int score, int actions, int pitFalls, long decisionNanos)
+    {
+        this.outcome = outcome;
+        this.score = score;
+        this.actions = actions;
+        this.pitFalls = pitFalls;
+        this.decisionNanos = decisionNanos;
+    }
+
+    /**
+     * Returns how the game ended.
+     *
+     * @return WON, EATEN, STUCK or TIMEOUT
+     */
+    public int getOutcome()
+    {
+        return outcome;
+    }
+
+    /**
+     * Returns the score at the end of the game.
+     *
+     * @return The score
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * Returns the number of times the agent was asked to act.
+     *
+     * @return Number of agent actions
+     */
+    public int getActions()
+    {
+        return actions;
+    }
+
+    /**
+     * Returns the number of times the agent fell into a pit.
+     *
+     * @return Number of pit falls
+     */
+    public int getPitFalls()
+    {
+        return pitFalls;
+    }
+
+    /**
+     * Returns the time the agent spent deciding and executing its actions.
+     *
+     * @return Time in nanoseconds
+     */
+    public long getDecisionNanos()
+    {
+        return decisionNanos;
+    }
+}
@@ -0,0 +1,376 @@
+package wumpusworld;
+
+/**
+ * Propositional facts about pits and the Wumpus, derived from the percepts
+ * by unit propagation. Used to find frontier squares that are certainly
+ * safe or certainly dangerous without counting hypotheses.
+ *
+ * A visited square without breeze proves that its neighbors have no pit.
+ * A visited square with a breeze is a clause: at least one of its
+ * neighbors has a pit. When all but one neighbor of a breeze square are
+ * proven free of pits and none is a proven pit, the last one must have a
+ * pit. Each time a square is proven free of pits, only the breeze
+ * clauses of its visited neighbors are checked again. If the number of
+ * pits is known, it gives two more rules: when all pits are found, every
+ * other square is safe, and when the squares that can still have a pit
+ * are as many as the pits that are left, all of them have one. Maps from
+ * a map file can have any number of pits, so the rules are only used
+ * when the number is given.
+ *
+ * There is exactly one Wumpus. Its candidate squares are kept as a
+ * bitboard: a stench keeps only the neighbors of the square, a square
+ * without stench removes its neighbors, and a visited square can not have
+ * the Wumpus. If a single candidate is left, the Wumpus is there.
+ *
+ * All facts are stored as bitboards, so classifying the whole frontier
+ * is a few word operations.
+ *
+ * For squares that are neither safe nor dangerous, estimate() gives
+ * rough probabilities from the facts alone, for when there is no time
+ * to count hypotheses.
+ */
+public class KnowledgeBase
+{
+    /**
+     * The square has no pit and no Wumpus.
+     */
+    public static final int SAFE = 0;
+
+    /**
+     * The square certainly has a pit or the Wumpus.
+     */
+    public static final int DANGEROUS = 1;
+
+    /**
+     * Neither safe nor dangerous can be proven.
+     */
+    public static final int UNKNOWN = 2;
+
+    private final BoardGeometry g;
+    private final int pits;
+
+    private final BitBoard visited;
+    private final BitBoard breeze;
+    private final BitBoard pit;
+    private final BitBoard noPit;
+    private final BitBoard wumpus;
+    private boolean wumpusAlive = true;
+
+    //Breeze squares whose clause must be checked again
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueSize;
+
+    //Scratch
+    private final BitBoard mask;
+
+    /**
+     * Creates a new knowledge base where only the start square
+     * (1,1) has been visited.
+     *
+     * @param size Size of the world
+     * @param pits Number of pits in the world, or FrontierInference.UNKNOWN_PITS
+     * @param breezeAtStart True if there is a breeze in the start square
+     * @param stenchAtStart True if there is a stench in the start square
+     */
+    public KnowledgeBase(int size, int pits, boolean breezeAtStart, boolean stenchAtStart)
+    {
+        g = BoardGeometry.of(size);
+        this.pits = pits;
+        visited = new BitBoard(size);
+        breeze = new BitBoard(size);
+        pit = new BitBoard(size);
+        noPit = new BitBoard(size);
+        wumpus = new BitBoard(size);
+        mask = new BitBoard(size);
+        queue = new int[g.getCells()];
+        queued = new boolean[g.getCells()];
+        for (int c = 1; c < g.getCells(); c++)
+        {
+            wumpus.set(c);
+        }
+        visit(0, breezeAtStart, stenchAtStart, false);
+    }
+
+    /**
+     * Adds the percepts of a square the agent has moved to, and
+     * propagates the new facts. Squares that have been visited
+     * before are ignored.
+     *
+     * @param cell Cell index
+     * @param hasBreeze True if there is a breeze in the square
+     * @param hasStench True if there is a stench in the square
+     * @param hasPit True if the square has a pit
+     */
+    public void visit(int cell, boolean hasBreeze, boolean hasStench, boolean hasPit)
+    {
+        if (visited.get(cell)) return;
+        visited.set(cell);
+        wumpus.clear(cell);
+
+        if (hasPit) setPit(cell);
+        else setNoPit(cell);
+
+        int[] nb = g.neighbors(cell);
+        if (hasBreeze)
+        {
+            breeze.set(cell);
+            enqueue(cell);
+        }
+        else
+        {
+            for (int n : nb)
+            {
+                setNoPit(n);
+            }
+        }
+
+        if (wumpusAlive)
+        {
+            mask.clear();
+            for (int n : nb)
+            {
+                mask.set(n);
+            }
+            if (hasStench) wumpus.and(mask);
+            else wumpus.andNot(mask);
+        }
+        propagate();
+    }
+
+    /**
+     * Copies the facts of another knowledge base of the same size
+     * and number of pits. Nothing is allocated.
+     *
+     * @param o Knowledge base to copy
+     */
+    public void copyFrom(KnowledgeBase o)
+    {
+        visited.copyFrom(o.visited);
+        breeze.copyFrom(o.breeze);
+        pit.copyFrom(o.pit);
+        noPit.copyFrom(o.noPit);
+        wumpus.copyFrom(o.wumpus);
+        wumpusAlive = o.wumpusAlive;
+    }
+
+    /**
+     * Removes the Wumpus after it has been killed.
+     */
+    public void wumpusKilled()
+    {
+        wumpusAlive = false;
+        wumpus.clear();
+    }
+
+    /**
+     * Classifies a square.
+     *
+     * @param cell Cell index
+     * @return SAFE, DANGEROUS or UNKNOWN
+     */
+    public int classify(int cell)
+    {
+        if (pit.get(cell) || getWumpus() == cell) return DANGEROUS;
+        if (noPit.get(cell) && !wumpus.get(cell)) return SAFE;
+        return UNKNOWN;
+    }
+
+    /**
+     * Finds the squares of a set that are proven safe.
+     *
+     * @param squares Squares to check, for example the frontier
+     * @param dst Output, the safe squares
+     * @return dst
+     */
+    public BitBoard getSafe(BitBoard squares, BitBoard dst)
+    {
+        dst.copyFrom(squares);
+        dst.and(noPit);
+        dst.andNot(wumpus);
+        return dst;
+    }
+
+    /**
+     * Estimates the probability of a pit and of the Wumpus in each
+     * square of a set without counting hypotheses. A proven fact gives
+     * 0 or 1. Otherwise, a square next to a breeze that is not yet
+     * explained gets 1 divided by the number of squares that can explain
+     * the breeze, the largest over its breezes, and other squares get the
+     * number of pits that are left divided by the number of squares that
+     * can have them, or FrontierInference.PIT_PRIOR if the number of pits
+     * is not known. The Wumpus is equally likely in each candidate square.
+     *
+     * @param squares Squares to estimate, for example the frontier
+     * @param pitProbabilities Output, indexed by cell. Only cells in squares are written.
+     * @param wumpusProbabilities Output, indexed by cell. Only cells in squares are written.
+     */
+    public void estimate(BitBoard squares, double[] pitProbabilities, double[] wumpusProbabilities)
+    {
+        int open = g.getCells() - noPit.cardinality() - pit.cardinality();
+        double rest = open > 0 ? Math.max(0, pits - pit.cardinality()) / (double)open : 0;
+        if (pits == FrontierInference.UNKNOWN_PITS) rest = FrontierInference.PIT_PRIOR;
+        int candidates = wumpus.cardinality();
+
+        for (int c = squares.nextSetBit(0); c >= 0; c = squares.nextSetBit(c + 1))
+        {
+            wumpusProbabilities[c] = wumpus.get(c) ? 1.0 / candidates : 0;
+            if (pit.get(c) || noPit.get(c))
+            {
+                pitProbabilities[c] = pit.get(c) ? 1 : 0;
+                continue;
+            }
+            double p = rest;
+            for (int v : g.neighbors(c))
+            {
+                if (!breeze.get(v)) continue;
+                int count = 0;
+                boolean satisfied = false;
+                for (int n : g.neighbors(v))
+                {
+                    if (pit.get(n)) satisfied = true;
+                    else if (!noPit.get(n)) count++;
+                }
+                if (!satisfied) p = Math.max(p, 1.0 / count);
+            }
+            pitProbabilities[c] = Math.min(1, p);
+        }
+    }
+
+    /**
+     * Returns the square of the Wumpus, if it is proven.
+     *
+     * @return Cell index, or -1 if the Wumpus is dead or its square is not known
+     */
+    public int getWumpus()
+    {
+        if (!wumpusAlive || wumpus.cardinality() != 1) return -1;
+        return wumpus.nextSetBit(0);
+    }
+
+    /**
+     * Returns the squares that are proven to have a pit.
+     *
+     * @return Pits. Must not be modified.
+     */
+    public BitBoard getPits()
+    {
+        return pit;
+    }
+
+    /**
+     * Returns the squares that can still have the Wumpus.
+     *
+     * @return Wumpus candidates, empty if the Wumpus is dead. Must not be modified.
+     */
+    public BitBoard getWumpusCandidates()
+    {
+        return wumpus;
+    }
+
+    /**
+     * Returns the visited squares.
+     *
+     * @return Visited squares. Must not be modified.
+     */
+    public BitBoard getVisited()
+    {
+        return visited;
+    }
+
+    /**
+     * Returns the visited squares with a breeze.
+     *
+     * @return Breeze squares. Must not be modified.
+     */
+    public BitBoard getBreeze()
+    {
+        return breeze;
+    }
+
+    /**
+     * Returns the squares that are proven to have no pit.
+     *
+     * @return Squares without pit. Must not be modified.
+     */
+    public BitBoard getNoPits()
+    {
+        return noPit;
+    }
+
+    /**
+     * Proves that a square has a pit.
+     */
+    private void setPit(int cell)
+    {
+        if (pit.get(cell) || noPit.get(cell)) return;
+        pit.set(cell);
+        //Breeze clauses of the neighbors are satisfied, nothing to enqueue
+        if (pits != FrontierInference.UNKNOWN_PITS && pit.cardinality() == pits)
+        {
+            //All pits are found
+            for (int c = 0; c < g.getCells(); c++)
+            {
+                if (!pit.get(c)) setNoPit(c);
+            }
+        }
+    }
+
+    /**
+     * Proves that a square has no pit, and enqueues the breeze clauses
+     * that contain it.
+     */
+    private void setNoPit(int cell)
+    {
+        if (noPit.get(cell) || pit.get(cell)) return;
+        noPit.set(cell);
+        for (int n : g.neighbors(cell))
+        {
+            if (breeze.get(n)) enqueue(n);
+        }
+        if (pits != FrontierInference.UNKNOWN_PITS && g.getCells() - noPit.cardinality() == pits)
+        {
+            //The squares that are left must all have a pit
+            for (int c = 0; c < g.getCells(); c++)
+            {
+                if (!noPit.get(c)) setPit(c);
+            }
+        }
+    }
+
+    /**
+     * Adds a breeze square to the queue of clauses to check.
+     */
+    private void enqueue(int cell)
+    {
+        if (queued[cell]) return;
+        queued[cell] = true;
+        queue[queueSize++] = cell;
+    }
+
+    /**
+     * Checks the queued breeze clauses until no new fact is found.
+     */
+    private void propagate()
+    {
+        while (queueSize > 0)
+        {
+            int v = queue[--queueSize];
+            queued[v] = false;
+
+            int open = -1;
+            int openCount = 0;
+            boolean satisfied = false;
+            for (int n : g.neighbors(v))
+            {
+                if (pit.get(n)) satisfied = true;
+                else if (!noPit.get(n))
+                {
+                    open = n;
+                    openCount++;
+                }
+            }
+            if (!satisfied && openCount == 1) setPit(open);
+        }
+    }
+}
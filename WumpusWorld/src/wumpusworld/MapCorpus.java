@@ -0,0 +1,286 @@
+package wumpusworld;
+
+import java.awt.Point;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+/**
+ * A corpus of maps in a binary file with one fixed-width record per map,
+ * written by MapCorpusWriter. The file is memory-mapped when it is
+ * opened, so any map can be fetched by its index without parsing, and
+ * the maps handed out are read-only views of the records in the mapping.
+ * A map of the corpus is never copied: generateWorld builds the World
+ * directly from the record.
+ *
+ * Pits are stored as a bitmask over the cells, so maps can be at most
+ * 8x8. The file is mapped in regions of 1 GB, so the number of maps is
+ * not limited by the 2 GB limit of a single mapping.
+ *
+ * File layout (big-endian):
+ * <pre>
+ * int  MAGIC
+ * int  RECORD, the size of a record in bytes
+ * long number of maps
+ * one record per map:
+ *   byte size of the world
+ *   byte cell of the Wumpus, (y-1)*size+(x-1)
+ *   byte cell of the gold
+ *   byte 0
+ *   int  seed the map was generated from, -1 if it was not generated.
+ *        Seeds that do not fit in an int can not be written.
+ *   long pits, bit c is set if there is a pit in cell c
+ * </pre>
+ */
+public class MapCorpus
+{
+    public static final int MAGIC = 0x574D4331;
+    public static final int MAX_SIZE = 8;
+
+    static final int HEADER = 16;
+    static final int RECORD = 16;
+
+    //Records per mapped region, 1 GB
+    private static final int REGION_RECORDS = 1 << 26;
+
+    private final MappedByteBuffer[] regions;
+    private final long count;
+
+    /**
+     * Opens and memory-maps a map corpus.
+     *
+     * @param file Corpus file
+     * @throws IOException If the file could not be read or is not a map corpus
+     */
+    public MapCorpus(File file) throws IOException
+    {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try
+        {
+            long length = f.length();
+            if (length < HEADER || f.readInt() != MAGIC || f.readInt() != RECORD)
+            {
+                throw new IOException("Not a map corpus: " + file);
+            }
+            count = f.readLong();
+            if (count < 0 || length != HEADER + count * RECORD)
+            {
+                throw new IOException("Truncated map corpus: " + file);
+            }
+            regions = new MappedByteBuffer[(int)((count + REGION_RECORDS - 1) / REGION_RECORDS)];
+            for (int r = 0; r < regions.length; r++)
+            {
+                long first = (long)r * REGION_RECORDS;
+                long records = Math.min(REGION_RECORDS, count - first);
+                regions[r] = f.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER + first * RECORD, records * RECORD);
+            }
+        }
+        finally
+        {
+            f.close();
+        }
+    }
+
+    /**
+     * Checks if a file starts like a map corpus, so it can be told
+     * apart from a text map file.
+     *
+     * @param file The file
+     * @return True if the file is a map corpus
+     */
+    public static boolean isCorpus(File file)
+    {
+        if (file.length() < HEADER) return false;
+        try
+        {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                return in.readInt() == MAGIC;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of maps.
+     *
+     * @return Number of maps
+     */
+    public long size()
+    {
+        return count;
+    }
+
+    /**
+     * Returns a map of the corpus. The map is a read-only view of the
+     * record, and can be used from any thread. Its getters and
+     * generateWorld read the record.
+     *
+     * @param index Index of the map, starting at 0
+     * @return The map
+     */
+    public MapView get(long index)
+    {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Map " + index + " of " + count);
+        return new Record(regions[(int)(index / REGION_RECORDS)], (int)(index % REGION_RECORDS) * RECORD);
+    }
+
+    /**
+     * Generates a Wumpus World instance from a map of the corpus.
+     *
+     * @param index Index of the map, starting at 0
+     * @return Wumpus World instance
+     */
+    public World generateWorld(long index)
+    {
+        return get(index).generateWorld();
+    }
+
+    /**
+     * Returns an iterator over all maps, in file order.
+     *
+     * @return Iterator over the maps
+     */
+    public Iterator<MapView> iterator()
+    {
+        return iterator(0, count);
+    }
+
+    /**
+     * Returns an iterator over a range of maps.
+     *
+     * @param first Index of the first map
+     * @param number Number of maps. The range ends at the last map of the corpus.
+     * @return Iterator over the maps first, first+1, ...
+     */
+    public Iterator<MapView> iterator(final long first, long number)
+    {
+        if (first < 0 || number < 0) throw new IndexOutOfBoundsException("Maps " + first + " + " + number);
+        final long end = Math.min(count, first + number);
+        return new Iterator<MapView>()
+        {
+            private long next = first;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < end;
+            }
+
+            @Override
+            public MapView next()
+            {
+                if (next >= end) throw new NoSuchElementException();
+                return get(next++);
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * A map that reads its objects from a record of the mapping.
+     */
+    private static final class Record implements MapView
+    {
+        private final MappedByteBuffer buf;
+        private final int offset;
+
+        Record(MappedByteBuffer buf, int offset)
+        {
+            this.buf = buf;
+            this.offset = offset;
+        }
+
+        @Override
+        public long getSeed()
+        {
+            return buf.getInt(offset + 4);
+        }
+
+        @Override
+        public int getSize()
+        {
+            return buf.get(offset);
+        }
+
+        @Override
+        public Point getWumpus()
+        {
+            return point(buf.get(offset + 1));
+        }
+
+        @Override
+        public Point getGold()
+        {
+            return point(buf.get(offset + 2));
+        }
+
+        @Override
+        public Vector<Point> getPits()
+        {
+            Vector<Point> pits = new Vector<Point>();
+            for (long p = buf.getLong(offset + 8); p != 0; p &= p - 1)
+            {
+                pits.add(point(Long.numberOfTrailingZeros(p)));
+            }
+            return pits;
+        }
+
+        @Override
+        public boolean hasPit(int x, int y)
+        {
+            int size = getSize();
+            if (x < 1 || y < 1 || x > size || y > size) return false;
+            return (buf.getLong(offset + 8) & 1L << ((y - 1) * size + (x - 1))) != 0;
+        }
+
+        @Override
+        public World generateWorld()
+        {
+            int size = getSize();
+            World w = new World(size);
+            int wumpus = buf.get(offset + 1);
+            int gold = buf.get(offset + 2);
+            w.addWumpus(wumpus % size + 1, wumpus / size + 1);
+            w.addGold(gold % size + 1, gold / size + 1);
+            for (long p = buf.getLong(offset + 8); p != 0; p &= p - 1)
+            {
+                int c = Long.numberOfTrailingZeros(p);
+                w.addPit(c % size + 1, c / size + 1);
+            }
+            return w;
+        }
+
+        /**
+         * Returns the position of a cell.
+         *
+         * @param c The cell
+         * @return The position
+         */
+        private Point point(int c)
+        {
+            int size = getSize();
+            return new Point(c % size + 1, c / size + 1);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package wumpusworld;
+
+import java.awt.Point;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+
+/**
+ * Writes a map corpus read by MapCorpus. The maps can be read from a
+ * text map file, or be random maps from MapGenerator.
+ *
+ * Usage: java wumpusworld.MapCorpusWriter mapfile corpusfile
+ *    or: java wumpusworld.MapCorpusWriter -random firstSeed count corpusfile
+ */
+public class MapCorpusWriter
+{
+    /**
+     * Converts a map file, or writes random maps.
+     *
+     * @param args The command line arguments
+     * @throws IOException If a file could not be read or written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        long start = System.currentTimeMillis();
+        long count;
+        String file;
+        if (args.length == 4 && args[0].equals("-random"))
+        {
+            file = args[3];
+            count = write(MapGenerator.getRandomMaps(Integer.parseInt(args[1]), Integer.parseInt(args[2])), file);
+        }
+        else if (args.length == 2)
+        {
+            file = args[1];
+            MapReader mr = new MapReader(args[0]);
+            mr.setRandomMaps(false);
+            MapReader.MapIterator maps = mr.iterator();
+            try
+            {
+                count = write(maps, file);
+            }
+            finally
+            {
+                maps.close();
+            }
+        }
+        else
+        {
+            System.out.println("Usage: java wumpusworld.MapCorpusWriter mapfile corpusfile");
+            System.out.println("   or: java wumpusworld.MapCorpusWriter -random firstSeed count corpusfile");
+            return;
+        }
+        System.out.println("Wrote " + count + " maps to " + file + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Writes maps to a corpus file. An existing file is replaced.
+     *
+     * @param maps The maps
+     * @param file Path of the file
+     * @return Number of maps written
+     * @throws IOException If the file could not be written
+     */
+    public static long write(Iterator<? extends MapView> maps, String file) throws IOException
+    {
+        long count = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try
+        {
+            out.writeInt(MapCorpus.MAGIC);
+            out.writeInt(MapCorpus.RECORD);
+            //The number of maps is written when all maps are written
+            out.writeLong(0);
+            while (maps.hasNext())
+            {
+                writeRecord(out, maps.next());
+                count++;
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try
+        {
+            f.seek(8);
+            f.writeLong(count);
+        }
+        finally
+        {
+            f.close();
+        }
+        return count;
+    }
+
+    /**
+     * Writes the record of a map.
+     *
+     * @param out Output stream
+     * @param map The map
+     * @throws IOException If the map could not be written or does not fit in a record
+     */
+    private static void writeRecord(DataOutputStream out, MapView map) throws IOException
+    {
+        int size = map.getSize();
+        if (size < 1 || size > MapCorpus.MAX_SIZE)
+        {
+            throw new IOException("Map size " + size + " is not supported, the maximum is " + MapCorpus.MAX_SIZE);
+        }
+        long seed = map.getSeed();
+        if (seed < Integer.MIN_VALUE || seed > Integer.MAX_VALUE)
+        {
+            throw new IOException("Map seed " + seed + " is not supported, it must fit in an int");
+        }
+        long pits = 0;
+        for (Point p : map.getPits())
+        {
+            pits |= 1L << cell(p, size);
+        }
+        out.writeByte(size);
+        out.writeByte(cell(map.getWumpus(), size));
+        out.writeByte(cell(map.getGold(), size));
+        out.writeByte(0);
+        out.writeInt((int)seed);
+        out.writeLong(pits);
+    }
+
+    /**
+     * Returns the cell of a position.
+     *
+     * @param p The position
+     * @param size Size of the world
+     * @return The cell, (y-1)*size+(x-1)
+     */
+    private static int cell(Point p, int size)
+    {
+        return (p.y - 1) * size + (p.x - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package wumpusworld;
+
+/**
+ * Thrown when a line of a map file can not be parsed. The message starts
+ * with the file name and the line number.
+ */
+public class MapFormatException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String file;
+    private final int line;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param file Name of the map file
+     * @param line Line number, starting at 1
+     * @param message What is wrong with the line
+     */
+    public MapFormatException(String file, int line, String message)
+    {
+        super(file + ":" + line + ": " + message);
+        this.file = file;
+        this.line = line;
+    }
+
+    /**
+     * Returns the name of the map file.
+     *
+     * @return File name
+     */
+    public String getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the number of the line that could not be parsed.
+     *
+     * @return Line number, starting at 1
+     */
+    public int getLine()
+    {
+        return line;
+    }
+}
@@ -1,5 +1,7 @@
 package wumpusworld;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
 /**
@@ -9,6 +11,11 @@ import java.util.Random;
  */
 public class MapGenerator 
 {
+    /**
+     * Number of pits in a generated map.
+     */
+    public static final int PITS = 3;
+    
     /**
      * Generates a random Wumpus World map.
      * 
@@ -19,16 +26,53 @@ public class MapGenerator
     {
         Random rnd = new Random(seed);
         WorldMap w = new WorldMap(4);
+        w.setSeed(seed);
         
         addRandomWumpus(w,rnd);
         addRandomGold(w,rnd);
-        addRandomPit(w,rnd);
-        addRandomPit(w,rnd);
-        addRandomPit(w,rnd);
+        for (int i = 0; i < PITS; i++)
+        {
+            addRandomPit(w,rnd);
+        }
         
         return w;
     }
     
+    /**
+     * Returns the random maps for a range of seeds. Each map is generated
+     * when the iterator gets to it, so any number of maps can be used.
+     * 
+     * @param firstSeed Seed of the first map
+     * @param count Number of maps
+     * @return Maps for the seeds firstSeed, firstSeed+1, ...
+     */
+    public static Iterator<WorldMap> getRandomMaps(final int firstSeed, final int count)
+    {
+        return new Iterator<WorldMap>()
+        {
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return next < count;
+            }
+            
+            @Override
+            public WorldMap next()
+            {
+                if (next >= count) throw new NoSuchElementException();
+                return getRandomMap(firstSeed + next++);
+            }
+            
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
     /**
      * Adds a pit to a random square.
      * 
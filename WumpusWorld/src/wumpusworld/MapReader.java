@@ -1,112 +1,393 @@
 package wumpusworld;
 
 import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * This class read maps from a file.
- * 
+ *
+ * The maps can be read all at once with readMaps, or one at a time with
+ * iterator or stream, which only keep the current map in memory. A map
+ * starts with a NEW line with the size, has W, G and P lines with the
+ * positions of the Wumpus, the gold and the pits, and ends with an END
+ * line. Lines starting with # and empty lines are skipped. Any other line
+ * is an error, reported with its line number in a MapFormatException.
+ *
+ * Three random maps are added after the maps of the file, unless
+ * setRandomMaps(false) is called.
+ *
  * @author Johan Hagelbäck
  */
 public class MapReader
 {
+    //Seeds of the random maps added after the maps of the file
+    private static final int[] RANDOM_SEEDS = {42, 1977, 1990};
+
+    //Maps per batch when a stream is split for parallel processing
+    private static final int BATCH_SIZE = 1024;
+
     private Vector<WorldMap> maps;
     private String mapFilename;
-    
+    private boolean randomMaps = true;
+
     /**
      * Creates a new instance of the class.
      */
     public MapReader()
     {
-        mapFilename = Config.getMapfile();
+        this(Config.getMapfile());
+    }
+
+    /**
+     * Creates a new instance of the class that reads
+     * a given map file.
+     *
+     * @param filename Path to the map file
+     */
+    public MapReader(String filename)
+    {
+        mapFilename = filename;
         maps = new Vector<WorldMap>();
     }
-    
+
+    /**
+     * Sets if the three random maps are added after the maps of the file.
+     *
+     * @param add True to add them, which is the default
+     */
+    public void setRandomMaps(boolean add)
+    {
+        randomMaps = add;
+    }
+
     /**
      * Read the maps from the map file and returns a Vector
-     * with the maps. The program exits if an error is
-     * encountered.
-     * 
-     * @return A list of map objects, or empty list if none was found. 
+     * with the maps. If an error is encountered, it is printed
+     * and the maps before the error are returned.
+     *
+     * @return A list of map objects, or empty list if none was found.
      */
     public Vector<WorldMap> readMaps()
     {
+        MapIterator it = null;
         try
         {
-            BufferedReader reader = new BufferedReader(new FileReader(mapFilename));
-            
-            WorldMap wm = null;
-            String line = reader.readLine();
-            while (line != null)
+            it = new MapIterator(new BufferedReader(new FileReader(mapFilename)), false);
+            while (it.hasNext())
             {
-                line = line.toUpperCase();
-                
-                //New map
-                if (line.startsWith("NEW"))
-                {
-                    String[] t = split(line);
-                    int size = Integer.parseInt(t[1]);
-                    wm = new WorldMap(size);
-                }
-                
-                //Pit
-                if (line.startsWith("P"))
+                maps.add(it.next());
+            }
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Unable to read map file: " + ex.getMessage());
+        }
+        catch (UncheckedIOException ex)
+        {
+            System.out.println("Unable to read map file: " + ex.getMessage());
+        }
+        catch (MapFormatException ex)
+        {
+            System.out.println("Unable to read map file: " + ex.getMessage());
+        }
+        finally
+        {
+            if (it != null) it.close();
+        }
+
+        //Add some random maps
+        if (randomMaps)
+        {
+            for (int seed : RANDOM_SEEDS)
+            {
+                maps.add(MapGenerator.getRandomMap(seed));
+            }
+        }
+
+        return maps;
+    }
+
+    /**
+     * Opens the map file for reading one map at a time. The iterator
+     * must be closed when it is not used to the end.
+     *
+     * next() throws a MapFormatException if a map can not be parsed,
+     * and an UncheckedIOException if the file can not be read.
+     *
+     * @return Iterator over the maps
+     * @throws IOException If the map file can not be opened
+     */
+    public MapIterator iterator() throws IOException
+    {
+        return new MapIterator(new BufferedReader(new FileReader(mapFilename)), randomMaps);
+    }
+
+    /**
+     * Opens the map file as a stream of maps, in file order. Maps are
+     * parsed as the stream is consumed. A parallel stream takes batches
+     * of maps from the file as the work is split, so memory use depends
+     * on the number of threads, not on the number of maps. The stream
+     * should be closed, for example with try-with-resources.
+     *
+     * @return Stream of maps
+     * @throws IOException If the map file can not be opened
+     */
+    public Stream<WorldMap> stream() throws IOException
+    {
+        final MapIterator it = iterator();
+        return StreamSupport.stream(new MapSpliterator(it), false).onClose(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                it.close();
+            }
+        });
+    }
+
+    /**
+     * Lazy iterator over the maps of a file.
+     */
+    public class MapIterator implements Iterator<WorldMap>, Closeable
+    {
+        private final BufferedReader reader;
+        private final boolean addRandomMaps;
+        private int lineNumber = 0;
+        private WorldMap next;
+        private int nextRandom = 0;
+        private boolean endOfFile = false;
+
+        /**
+         * Creates an iterator over the maps of a reader.
+         *
+         * @param reader Reader of the map file
+         * @param addRandomMaps True to add the random maps after the maps of the file
+         */
+        private MapIterator(BufferedReader reader, boolean addRandomMaps)
+        {
+            this.reader = reader;
+            this.addRandomMaps = addRandomMaps;
+        }
+
+        /**
+         * Checks if there are more maps. Parses the next map if needed.
+         *
+         * @return True if there are more maps
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if (next != null) return true;
+            if (!endOfFile)
+            {
+                try
                 {
-                    String[] t = split(line);
-                    int x = Integer.parseInt(t[1]);
-                    int y = Integer.parseInt(t[2]);
-                    wm.addPit(x,y);
+                    next = parse();
                 }
-                
-                //Wumpus
-                if (line.startsWith("W"))
+                catch (IOException ex)
                 {
-                    String[] t = split(line);
-                    int x = Integer.parseInt(t[1]);
-                    int y = Integer.parseInt(t[2]);
-                    wm.addWumpus(x,y);
+                    throw new UncheckedIOException(mapFilename + ":" + lineNumber + ": " + ex.getMessage(), ex);
                 }
-                
-                //Gold
-                if (line.startsWith("G"))
+                if (next != null) return true;
+                endOfFile = true;
+                close();
+            }
+            if (addRandomMaps && nextRandom < RANDOM_SEEDS.length)
+            {
+                next = MapGenerator.getRandomMap(RANDOM_SEEDS[nextRandom++]);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the next map.
+         *
+         * @return The map
+         */
+        @Override
+        public WorldMap next()
+        {
+            if (!hasNext()) throw new NoSuchElementException();
+            WorldMap m = next;
+            next = null;
+            return m;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Closes the map file.
+         */
+        @Override
+        public void close()
+        {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException ex)
+            {
+                //Nothing more will be read
+            }
+        }
+
+        /**
+         * Parses the next map of the file.
+         *
+         * @return The map, or null at the end of the file
+         * @throws IOException If the file can not be read
+         */
+        private WorldMap parse() throws IOException
+        {
+            WorldMap wm = null;
+            int start = 0;
+            String line = reader.readLine();
+            while (line != null)
+            {
+                lineNumber++;
+                line = line.trim().toUpperCase();
+                if (line.length() > 0 && !line.startsWith("#"))
                 {
                     String[] t = split(line);
-                    int x = Integer.parseInt(t[1]);
-                    int y = Integer.parseInt(t[2]);
-                    wm.addGold(x,y);
-                }
-                
-                //End of map
-                if (line.startsWith("END"))
-                {
-                    maps.add(wm);
+                    if (t[0].equals("NEW"))
+                    {
+                        if (wm != null) throw error("NEW before the END of the map at line " + start);
+                        int size = number(t, 1);
+                        if (t.length != 2 || size < 1) throw error("expected NEW and the size of the map");
+                        wm = new WorldMap(size);
+                        start = lineNumber;
+                    }
+                    else if (t[0].equals("END"))
+                    {
+                        if (wm == null) throw error("END without NEW");
+                        if (wm.getWumpus() == null) throw error("map has no Wumpus");
+                        if (wm.getGold() == null) throw error("map has no gold");
+                        return wm;
+                    }
+                    else if (t[0].equals("W") || t[0].equals("G") || t[0].equals("P"))
+                    {
+                        if (wm == null) throw error(t[0] + " before NEW");
+                        int x = number(t, 1);
+                        int y = number(t, 2);
+                        if (t.length != 3) throw error("expected " + t[0] + " and two coordinates");
+                        if (x < 1 || y < 1 || x > wm.getSize() || y > wm.getSize())
+                        {
+                            throw error("position " + x + "," + y + " is outside the map");
+                        }
+                        if (t[0].equals("W")) wm.addWumpus(x, y);
+                        if (t[0].equals("G")) wm.addGold(x, y);
+                        if (t[0].equals("P")) wm.addPit(x, y);
+                    }
+                    else
+                    {
+                        throw error("unknown line: " + line);
+                    }
                 }
-                
                 line = reader.readLine();
             }
-            
-            reader.close();
+            if (wm != null) throw error("map at line " + start + " has no END");
+            return null;
         }
-        catch (Exception ex)
+
+        /**
+         * Parses a number of a line.
+         *
+         * @param t Tokens of the line
+         * @param i Index of the number
+         * @return The number
+         */
+        private int number(String[] t, int i)
         {
-            
+            if (i >= t.length) throw error("expected " + t[0] + " and " + (t[0].equals("NEW") ? "the size" : "two coordinates"));
+            try
+            {
+                return Integer.parseInt(t[i]);
+            }
+            catch (NumberFormatException ex)
+            {
+                throw error("not a number: " + t[i]);
+            }
+        }
+
+        /**
+         * Creates an exception for the current line.
+         *
+         * @param message What is wrong
+         * @return The exception
+         */
+        private MapFormatException error(String message)
+        {
+            return new MapFormatException(mapFilename, lineNumber, message);
+        }
+    }
+
+    /**
+     * Spliterator over the maps of an iterator. A split takes the next
+     * batch of maps, so parallel streams can work on batches while the
+     * file is read.
+     */
+    private static class MapSpliterator implements Spliterator<WorldMap>
+    {
+        private final Iterator<WorldMap> it;
+
+        MapSpliterator(Iterator<WorldMap> it)
+        {
+            this.it = it;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super WorldMap> action)
+        {
+            if (!it.hasNext()) return false;
+            action.accept(it.next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<WorldMap> trySplit()
+        {
+            if (!it.hasNext()) return null;
+            Object[] batch = new Object[BATCH_SIZE];
+            int n = 0;
+            while (n < BATCH_SIZE && it.hasNext())
+            {
+                batch[n++] = it.next();
+            }
+            return Spliterators.spliterator(batch, 0, n, characteristics());
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return ORDERED | NONNULL;
         }
-        
-        //Add some random maps
-        maps.add(MapGenerator.getRandomMap(42));
-        maps.add(MapGenerator.getRandomMap(1977));
-        maps.add(MapGenerator.getRandomMap(1990));
-        
-        return maps;
     }
-    
+
     /**
      * Splits a string with whitespace as delimiter.
-     * 
+     *
      * @param line The string to split
      * @return Tokens
      */
     private String[] split(String line)
     {
-        return line.split(" ");
+        return line.split("\\s+");
     }
 }
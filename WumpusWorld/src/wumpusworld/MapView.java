@@ -0,0 +1,63 @@
+package wumpusworld;
+
+import java.awt.Point;
+import java.util.Vector;
+
+/**
+ * A map that worlds can be generated from, without the methods that
+ * change it. WorldMap is a map that can be built up, and the maps of a
+ * MapCorpus are read-only views of its records.
+ */
+public interface MapView
+{
+    /**
+     * Returns the seed the map was generated from.
+     *
+     * @return The seed, or -1 if the map was not generated
+     */
+    public long getSeed();
+
+    /**
+     * Returns the size of the world map.
+     *
+     * @return The size
+     */
+    public int getSize();
+
+    /**
+     * Returns position for the Wumpus.
+     *
+     * @return The position
+     */
+    public Point getWumpus();
+
+    /**
+     * Returns position for the gold treasure.
+     *
+     * @return The position
+     */
+    public Point getGold();
+
+    /**
+     * Returns the positions of the pits.
+     *
+     * @return The positions
+     */
+    public Vector<Point> getPits();
+
+    /**
+     * Checks if there is a pit in a square.
+     *
+     * @param x X position
+     * @param y Y position
+     * @return True if the square has a pit
+     */
+    public boolean hasPit(int x, int y);
+
+    /**
+     * Generates a new Wumpus World instance from the map.
+     *
+     * @return Wumpus World instance
+     */
+    public World generateWorld();
+}
@@ -0,0 +1,357 @@
+package wumpusworld;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Approximate pit counts for frontier components that are too large to
+ * enumerate. FrontierInference uses it for every component with more
+ * free squares than a threshold.
+ *
+ * The pit hypotheses of a component are sampled with a Metropolis chain.
+ * A step picks a random free square and either adds a pit there, removes
+ * the pit there, or moves a random pit there. Steps that would leave a
+ * breeze unexplained or put more than the maximum number of pits in the
+ * component are rejected, so the chain only visits consistent hypotheses,
+ * each with a probability proportional to its prior. One sample is
+ * recorded per sweep over the free squares. Weighted by the inverse
+ * prior of its pit count, a sample contributes to the same counts as an
+ * enumerated hypothesis (up to a constant factor per component, which
+ * cancels when the components are combined).
+ *
+ * The samples are recorded in contiguous batches. The spread of the
+ * probabilities calculated from each batch gives a confidence interval
+ * that accounts for the correlation between successive samples.
+ *
+ * Each decision has a sample budget and a time budget, shared evenly by
+ * the components that are sampled. The time budget ends early if the
+ * decision has a deadline. An instance is not thread-safe, so
+ * each agent must have its own.
+ */
+public class MonteCarloInference
+{
+    /**
+     * Number of batches used for confidence intervals.
+     */
+    public static final int BATCHES = 20;
+
+    /**
+     * Two-sided 95% quantile of the t distribution with BATCHES-1
+     * degrees of freedom.
+     */
+    static final double T_95 = 2.093;
+
+    //Sweeps before the first sample is recorded
+    private static final int BURN_IN = 10;
+
+    private final int threshold;
+    private final int maxSamples;
+    private final long timeBudget;
+    private final Random rnd;
+    private final double rho;
+    private final double addAccept;
+    private final double removeAccept;
+
+    //Budget of the current decision
+    private long deadline;
+    private int samplesLeft;
+    private int componentsLeft;
+
+    /**
+     * Creates a new sampler.
+     *
+     * @param threshold Components with more free squares than this are sampled
+     * @param maxSamples Maximum number of samples per decision
+     * @param timeBudgetNanos Maximum sampling time per decision in nanoseconds
+     * @param rnd Random generator
+     */
+    public MonteCarloInference(int threshold, int maxSamples, long timeBudgetNanos, Random rnd)
+    {
+        this.threshold = threshold;
+        this.maxSamples = maxSamples;
+        this.timeBudget = timeBudgetNanos;
+        this.rnd = rnd;
+        rho = FrontierInference.PIT_PRIOR / (1 - FrontierInference.PIT_PRIOR);
+        addAccept = Math.min(1, rho);
+        removeAccept = Math.min(1, 1 / rho);
+    }
+
+    /**
+     * Returns the number of free squares above which a component
+     * is sampled.
+     *
+     * @return Threshold
+     */
+    public int getThreshold()
+    {
+        return threshold;
+    }
+
+    /**
+     * Starts the budget of a new decision.
+     *
+     * @param components Number of components that will be sampled
+     * @param timed True if the decision has a deadline
+     * @param decisionDeadline Deadline of the decision as a System.nanoTime() value
+     */
+    void startDecision(int components, boolean timed, long decisionDeadline)
+    {
+        deadline = System.nanoTime() + timeBudget;
+        if (timed && decisionDeadline - deadline < 0) deadline = decisionDeadline;
+        samplesLeft = maxSamples;
+        componentsLeft = components;
+    }
+
+    /**
+     * Samples the pit hypotheses of a component.
+     *
+     * @param cells Cells of the component, the free cells first
+     * @param free Number of free cells
+     * @param cap Maximum number of pits in the component
+     * @param needCells Free cells (local index) that can explain each breeze, 4 per breeze padded with -1
+     * @param m0 First breeze of the component
+     * @param m1 End of the breezes of the component
+     * @return Estimated pit counts, with one component per batch
+     */
+    FrontierInference.Component sample(int[] cells, int free, int cap, int[] needCells, int m0, int m1)
+    {
+        int n = cells.length;
+        int w = cap + 1;
+        int m = m1 - m0;
+
+        //Budget share of this component
+        int share = Math.max(1, componentsLeft);
+        long now = System.nanoTime();
+        long until = now + Math.max(0, deadline - now) / share;
+        int budget = Math.max(2 * BATCHES, samplesLeft / share);
+        componentsLeft--;
+
+        //Breezes of each free cell
+        int[] cellNeeds = new int[free * 4];
+        int[] cellNeedCount = new int[free];
+        for (int c = 0; c < m; c++)
+        {
+            for (int j = 0; j < 4; j++)
+            {
+                int i = needCells[(m0 + c) * 4 + j];
+                if (i >= 0) cellNeeds[i * 4 + cellNeedCount[i]++] = c;
+            }
+        }
+
+        Chain chain = new Chain(free, m, cellNeeds, cellNeedCount);
+        chain.start(needCells, m0);
+        int ref = Math.min(chain.k, cap);
+
+        //Weight of a sample with k pits, the inverse prior relative to ref pits
+        double[] factor = new double[w];
+        for (int k = 0; k < w; k++)
+        {
+            factor[k] = Math.pow(rho, ref - k);
+        }
+
+        //Batches of samples. When all 2*BATCHES batches are full, pairs are
+        //merged and the batch length doubles.
+        double[][] batchCount = new double[2 * BATCHES][w];
+        double[][] batchCellCount = new double[2 * BATCHES][n * w];
+        int batchLen = 1;
+        int filled = 0;
+        int inBatch = 0;
+
+        for (int s = 0; s < BURN_IN * free; s++)
+        {
+            chain.step(cap);
+        }
+        int samples = 0;
+        while (samples < budget && (samples < 2 * BATCHES || (samples & 63) != 0 || System.nanoTime() < until))
+        {
+            for (int s = 0; s < free; s++)
+            {
+                chain.step(cap);
+            }
+            samples++;
+
+            if (chain.k <= cap)
+            {
+                double f = factor[chain.k];
+                batchCount[filled][chain.k] += f;
+                for (int p = 0; p < chain.k; p++)
+                {
+                    batchCellCount[filled][chain.pits[p] * w + chain.k] += f;
+                }
+            }
+            if (++inBatch == batchLen)
+            {
+                inBatch = 0;
+                if (++filled == 2 * BATCHES)
+                {
+                    for (int b = 0; b < BATCHES; b++)
+                    {
+                        add(batchCount[2 * b], batchCount[2 * b + 1], batchCount[b]);
+                        add(batchCellCount[2 * b], batchCellCount[2 * b + 1], batchCellCount[b]);
+                    }
+                    for (int b = BATCHES; b < 2 * BATCHES; b++)
+                    {
+                        Arrays.fill(batchCount[b], 0);
+                        Arrays.fill(batchCellCount[b], 0);
+                    }
+                    filled = BATCHES;
+                    batchLen *= 2;
+                }
+            }
+        }
+        samplesLeft = Math.max(0, samplesLeft - samples);
+
+        //Pooled counts of all samples, including the last partial batch
+        FrontierInference.Component pooled = new FrontierInference.Component(cells, cap);
+        pooled.batches = new FrontierInference.Component[filled];
+        for (int b = 0; b <= filled; b++)
+        {
+            add(pooled.count, batchCount[b], pooled.count);
+            add(pooled.cellCount, batchCellCount[b], pooled.cellCount);
+        }
+        for (int b = 0; b < filled; b++)
+        {
+            FrontierInference.Component batch = new FrontierInference.Component(cells, cap);
+            System.arraycopy(batchCount[b], 0, batch.count, 0, w);
+            System.arraycopy(batchCellCount[b], 0, batch.cellCount, 0, n * w);
+            pooled.batches[b] = batch;
+        }
+        return pooled;
+    }
+
+    /**
+     * Adds two arrays element by element.
+     */
+    private static void add(double[] a, double[] b, double[] out)
+    {
+        for (int i = 0; i < out.length; i++)
+        {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    /**
+     * State of the Markov chain over the pit hypotheses of a component.
+     */
+    private final class Chain
+    {
+        final int free;
+        final int[] cellNeeds;
+        final int[] cellNeedCount;
+        //Number of pits next to each breeze
+        final int[] cover;
+        //Pit cells, and the position of each cell in the pit list (-1 if no pit)
+        final int[] pits;
+        final int[] pos;
+        int k;
+
+        Chain(int free, int m, int[] cellNeeds, int[] cellNeedCount)
+        {
+            this.free = free;
+            this.cellNeeds = cellNeeds;
+            this.cellNeedCount = cellNeedCount;
+            cover = new int[m];
+            pits = new int[free];
+            pos = new int[free];
+            Arrays.fill(pos, -1);
+        }
+
+        /**
+         * Finds a consistent start hypothesis. Each unexplained breeze gets
+         * a pit in the square that explains most unexplained breezes, then
+         * pits that are not needed are removed.
+         */
+        void start(int[] needCells, int m0)
+        {
+            for (int c = 0; c < cover.length; c++)
+            {
+                if (cover[c] > 0) continue;
+                int best = -1;
+                int bestGain = -1;
+                for (int j = 0; j < 4; j++)
+                {
+                    int i = needCells[(m0 + c) * 4 + j];
+                    if (i < 0) continue;
+                    int gain = 0;
+                    for (int t = 0; t < cellNeedCount[i]; t++)
+                    {
+                        if (cover[cellNeeds[i * 4 + t]] == 0) gain++;
+                    }
+                    if (gain > bestGain)
+                    {
+                        best = i;
+                        bestGain = gain;
+                    }
+                }
+                add(best);
+            }
+            for (int p = k - 1; p >= 0; p--)
+            {
+                if (removable(pits[p])) remove(pits[p]);
+            }
+        }
+
+        /**
+         * Makes one step of the chain.
+         *
+         * @param cap Maximum number of pits
+         */
+        void step(int cap)
+        {
+            int i = rnd.nextInt(free);
+            boolean addOrRemove = rnd.nextBoolean();
+            if (pos[i] >= 0)
+            {
+                if (addOrRemove && removable(i) && (removeAccept == 1 || rnd.nextDouble() < removeAccept)) remove(i);
+            }
+            else if (addOrRemove)
+            {
+                if (k < cap && rnd.nextDouble() < addAccept) add(i);
+            }
+            else if (k > 0)
+            {
+                //Move a random pit to i
+                int j = pits[rnd.nextInt(k)];
+                add(i);
+                if (removable(j)) remove(j);
+                else remove(i);
+            }
+        }
+
+        /**
+         * Checks if the pit in a cell can be removed without leaving a
+         * breeze unexplained.
+         */
+        boolean removable(int i)
+        {
+            for (int t = 0; t < cellNeedCount[i]; t++)
+            {
+                if (cover[cellNeeds[i * 4 + t]] < 2) return false;
+            }
+            return true;
+        }
+
+        void add(int i)
+        {
+            for (int t = 0; t < cellNeedCount[i]; t++)
+            {
+                cover[cellNeeds[i * 4 + t]]++;
+            }
+            pos[i] = k;
+            pits[k++] = i;
+        }
+
+        void remove(int i)
+        {
+            for (int t = 0; t < cellNeedCount[i]; t++)
+            {
+                cover[cellNeeds[i * 4 + t]]--;
+            }
+            int p = pos[i];
+            int last = pits[--k];
+            pits[p] = last;
+            pos[last] = p;
+            pos[i] = -1;
+        }
+    }
+}
@@ -1,134 +1,134 @@
 package wumpusworld;
 
 import java.util.*;
-import java.lang.Math;
 
 /**
- * Contains starting code for creating your own Wumpus World agent.
- * Currently the agent only make a random decision each turn.
+ * A Wumpus World agent that explores the world one frontier room at a
+ * time. Its observations are kept in a belief state across turns, and
+ * it goes to the frontier room with the lowest probability of a pit or
+ * the Wumpus.
  * 
  * @author Johan Hagelbäck
  */
-public class MyAgent implements Agent
+public class MyAgent implements AnytimeAgent
 {
     private World w;
-    int rnd;
+    private AgentOptions options;
+    private int size;
 
     /**
-     * Record progress of the game
+     * Record progress of the game. Rooms are cell indices, see BoardGeometry
      */
-    private List<Coordinate> frontier=new ArrayList<>();
-    private List<Coordinate> known=new ArrayList<>();
-    private Coordinate[][] coordinates = new Coordinate[4][4];
-    private List<Coordinate> knownPits=new ArrayList<>();
-    //private List<Coordinate> knownPits = new ArrayList<>();
-    //private List<Coordinate> knownWumpus = new ArrayList<>();
+    private BoardGeometry g;
 
-    class Coordinate {
-        final int x;
-        final int y;
-        Coordinate left;
-        Coordinate right;
-        Coordinate up;
-        Coordinate down;
-        List<Coordinate> neighbors;
-
-
-        public Coordinate(int x, int y){
-            this.x=x;
-            this.y=y;
-
-
-        }
-
-        public void generateNeighbors(){
-            neighbors=new ArrayList<>();
-            if (x>1){
-                left=coordinates[x-2][y-1];
-                neighbors.add(left);
-            }else {
-                left=null;
-            }
-
-            if (x<4){
-                right=coordinates[x][y-1];
-                neighbors.add(right);
-            }else {
-                right=null;
-            }
-
-            if (y<4){
-                up=coordinates[x-1][y];
-                neighbors.add(up);
-            }else {
-                up=null;
-            }
-
-            if (y>1){
-                down=coordinates[x-1][y-2];
-                neighbors.add(down);
-            }else {
-                down=null;
-            }
-        }
-
-        public Coordinate getLeft() {
-            return left;
-        }
-
-        public Coordinate getRight() {
-            return right;
-        }
-
-        public Coordinate getUp() {
-            return up;
-        }
+    /**
+     * Observations and pit counts carried across turns, and buffers
+     */
+    private BeliefState belief;
+    private KnowledgeBase kb;
+    private RoutePlanner planner;
+    private int[] route;
+    private BitBoard newlyVisited;
+    private double[] pitProbs;
+    private double[] wumpusProbs;
+    //Half-width of the 95% confidence interval of each pit probability,
+    //0 unless the frontier component was sampled
+    private double[] pitErrors;
+    //Frontier rooms with the same lowest danger, and proven safe rooms
+    private int[] sameDestination;
+    private BitBoard safe;
+    //Probability of a pit, the wumpus or both in each frontier room
+    private double[] danger;
+    //Simulates games to choose between risky rooms, null if disabled
+    private RolloutPlanner lookahead;
 
-        public Coordinate getDown() {
-            return down;
-        }
+    /**
+     * Deadline of the current decision
+     */
+    private boolean timed;
+    private long deadline;
+    private Random rand=new Random();
 
-    }
-    
     /**
      * Creates a new instance of your solver agent.
      * 
      * @param world Current world state 
      */
     public MyAgent(World world)
+    {
+        this(world, AgentOptions.getDefault());
+    }
+
+    /**
+     * Creates a new instance of your solver agent.
+     * 
+     * @param world Current world state 
+     * @param options Settings and posterior cache shared with other agents
+     */
+    public MyAgent(World world, AgentOptions options)
     {
         w = world;
+        this.options = options;
+        size = w.getSize();
         //initialize
-        for (int i=0; i<4; i++){
-            for (int j=0; j<4; j++)
-            coordinates[i][j]=new Coordinate(i+1, j+1);
-        }
-        for (int i=0; i<4; i++){
-            for (int j=0; j<4; j++)
-                coordinates[i][j].generateNeighbors();
-        }
-        known.add(coordinates[0][0]);
-        frontier.add(coordinates[0][1]);
-        frontier.add(coordinates[1][0]);
+        g = BoardGeometry.of(size);
+        belief=new BeliefState(size, w.hasBreeze(1, 1), w.hasStench(1, 1));
+        kb=new KnowledgeBase(size, options.getPitCount(), w.hasBreeze(1, 1), w.hasStench(1, 1));
+        planner=new RoutePlanner(size);
+        route=new int[size*size*4];
+        newlyVisited=new BitBoard(size);
+        belief.setSampler(options.createSampler(new Random()));
+        belief.setParallelism(options.getParallelThreshold());
+        pitProbs=new double[size*size];
+        pitErrors=new double[size*size];
+        wumpusProbs=new double[size*size];
+        sameDestination=new int[size*size];
+        safe=new BitBoard(size);
+        danger=new double[size*size];
+        lookahead=options.createRolloutPlanner(size, options.getPitCount(), new Random());
     }
    
             
     /**
-     * Asks your solver agent to execute an action.
+     * Asks your solver agent to execute an action. The decision gets the
+     * time per decision from the options.
      */
 
     public void doAction()
+    {
+        int budget=options.getDecisionTimeMillis();
+        timed=budget>0;
+        deadline=System.nanoTime()+budget*1000000L;
+        act();
+    }
+
+    /**
+     * Asks your solver agent to execute an action, decided before a deadline.
+     * @param deadlineNanos deadline as a System.nanoTime() value
+     */
+    public void doAction(long deadlineNanos)
+    {
+        timed=true;
+        deadline=deadlineNanos;
+        act();
+    }
+
+    /**
+     * Execute an action for the current decision deadline
+     */
+    private void act()
     {
         //Location of the player
         int cX = w.getPlayerX();
         int cY = w.getPlayerY();
         
+        updateBelief();
         
         //Basic action:
         //Grab Gold if we can.
         if (w.hasGlitter(cX, cY))
         {
-            w.doAction(World.A_GRAB);
+            w.doAction(World.OP_GRAB);
             return;
         }
         
@@ -136,495 +136,249 @@ public class MyAgent implements Agent
         //We are in a pit. Climb up.
         if (w.isInPit())
         {
-            knownPits.add(currentPosition());
-            w.doAction(World.A_CLIMB);
-            //knownPits.add(coordinates[w.getPlayerX()-1][w.getPlayerY()-1]);
+            w.doAction(World.OP_CLIMB);
             return;
         }
 
         //Take actions
 
-        Coordinate destination = selectFrontier();
-        moveToDestination(destination);
-
-        /*
-        //Test the environment
-        if (w.hasBreeze(cX, cY))
-        {
-            System.out.println("I am in a Breeze");
-        }
-        if (w.hasStench(cX, cY))
-        {
-            System.out.println("I am in a Stench");
-        }
-        if (w.hasPit(cX, cY))
-        {
-            System.out.println("I am in a Pit");
-        }
-        if (w.getDirection() == World.DIR_RIGHT)
-        {
-            System.out.println("I am facing Right");
-        }
-        if (w.getDirection() == World.DIR_LEFT)
-        {
-            System.out.println("I am facing Left");
-        }
-        if (w.getDirection() == World.DIR_UP)
-        {
-            System.out.println("I am facing Up");
-        }
-        if (w.getDirection() == World.DIR_DOWN)
-        {
-            System.out.println("I am facing Down");
-        }
-        
-        //decide next move
-        rnd = decideRandomMove();
-        if (rnd==0)
-        {
-            w.doAction(World.A_TURN_LEFT);
-            w.doAction(World.A_MOVE);
-        }
-        
-        if (rnd==1)
-        {
-            w.doAction(World.A_MOVE);
-        }
-                
-        if (rnd==2)
+        int destination = selectFrontier();
+        if (destination < 0)
         {
-            w.doAction(World.A_TURN_LEFT);
-            w.doAction(World.A_TURN_LEFT);
-            w.doAction(World.A_MOVE);
+            //All rooms are explored, there is nowhere to go
+            return;
         }
-                        
-        if (rnd==3)
-        {
-            w.doAction(World.A_TURN_RIGHT);
-            w.doAction(World.A_MOVE);
-        }*/
-                
-    }    
-    
-     /**
-     * Genertes a random instruction for the Agent.
-     */
-    public int decideRandomMove()
-    {
-      return (int)(Math.random() * 4);
+        moveToDestination(destination);
     }
 
     /**
      * Decide which frontier to go
-     * @return
+     * @return cell index of the room, or -1 if there is no frontier room
      */
-    private Coordinate selectFrontier(){
-        Map<Coordinate, Double> pitProbabilities=frontierPitProbability();
-        Map<Coordinate, Double> wumpusProbability=null;
-        if (w.wumpusAlive()){
-            wumpusProbability=frontierWumpusProbability();
-            for (Coordinate room : wumpusProbability.keySet()){
-                if (wumpusProbability.get(room)>0.9){
-                    shootWumpus(room);
-                    return room;
+    private int selectFrontier(){
+        BitBoard frontier=belief.getFrontier();
+        boolean wumpusAlive=w.wumpusAlive();
+        if (frontier.isEmpty()){
+            return -1;
+        }
+
+        //Fast path: shoot a proven wumpus, or go to a proven safe room.
+        //If the wumpus can not be shot, its room stays dangerous
+        int wumpus=kb.getWumpus();
+        if (wumpusAlive && w.hasArrow() && wumpus>=0 && frontier.get(wumpus)){
+            if (shootWumpus(wumpus)){
+                options.countDecision(AgentOptions.DECISION_DEDUCED);
+                return wumpus;
+            }
+        }
+        kb.getSafe(frontier, safe);
+        if (!safe.isEmpty()){
+            options.countDecision(AgentOptions.DECISION_DEDUCED);
+            int sameCount=0;
+            for (int room=safe.nextSetBit(0); room>=0; room=safe.nextSetBit(room+1)){
+                sameDestination[sameCount++]=room;
+            }
+            return sameDestination[rand.nextInt(sameCount)];
+        }
+
+        options.countDecision(computePosteriors());
+        if (wumpusAlive && w.hasArrow()){
+            for (int room=frontier.nextSetBit(0); room>=0; room=frontier.nextSetBit(room+1)){
+                if (wumpusProbs[room]>0.9){
+                    if (shootWumpus(room)){
+                        return room;
+                    }
+                    break;
                 }
             }
         }
         double factor=2;
-        List<Coordinate> sameDestination=new ArrayList<>();
-        for (Coordinate room : frontier){
-            double prob=pitProbabilities.get(room);
-            prob+= wumpusProbability!=null ? wumpusProbability.get(room) : 0;
+        int sameCount=0;
+        for (int room=frontier.nextSetBit(0); room>=0; room=frontier.nextSetBit(room+1)){
+            //Probability of a pit, the wumpus or both
+            double prob=FrontierInference.danger(pitProbs[room], wumpusAlive ? wumpusProbs[room] : 0);
+            danger[room]=prob;
             if (prob<factor){
                 factor=prob;
-                sameDestination.clear();
-                sameDestination.add(room);
+                sameCount=0;
+                sameDestination[sameCount++]=room;
             }else
                 if (prob==factor){
-                    sameDestination.add(room);
+                    sameDestination[sameCount++]=room;
                 }
         }
-        if (sameDestination.size()>1){
-            Random rand=new Random();
-            return sameDestination.get(rand.nextInt(sameDestination.size()));
-        }
-        return sameDestination.get(0);
-    }
-
-    /**
-     * Calculate probabilities each frontier room has a pit
-     * @return
-     */
-
-    private Map<Coordinate, Double> frontierPitProbability(){
-        Map<Coordinate, Double> map=new HashMap<>();
-        List<List<Coordinate>> allCombinations=findCombinations(Math.min(3-knownPits.size(), frontier.size()));
-        for (Coordinate coordinate : frontier){
-            double hasPit=0;
-            double noPits=0;
-            for (List<Coordinate> combination : allCombinations){
-                if (matchKnownBreeze(combination)){
-                    if (combination.contains(coordinate)){
-                        hasPit+=Math.pow(0.2, combination.size())*Math.pow(0.8, frontier.size()-combination.size());
-                    }else {
-                        noPits+=Math.pow(0.2, combination.size())*Math.pow(0.8, frontier.size()-combination.size());
-                    }
-                }
+        if (lookahead!=null){
+            int room=lookahead.choose(w, kb, frontier, danger, timed, deadline);
+            if (room>=0){
+                return room;
             }
-            hasPit/= (hasPit+noPits) >0 ? hasPit+noPits : 1;
-            map.put(coordinate, hasPit);
         }
-        return map;
+        if (sameCount>1){
+            return sameDestination[rand.nextInt(sameCount)];
+        }
+        return sameDestination[0];
     }
 
     /**
-     * Calculate probabilities each frontier room has a pit
-     * @return
+     * Add new observations from the world to the belief state
      */
-
-    private Map<Coordinate, Double> frontierWumpusProbability(){
-        Map<Coordinate, Double> map=new HashMap<>();
-        List<List<Coordinate>> allCombinations=findCombinations(1);
-        for (Coordinate coordinate : frontier){
-            double hasWumpus=0;
-            double noWumpus=0;
-            for (List<Coordinate> combination : allCombinations){
-                if (matchKnownStench(combination)){
-                    if (combination.contains(coordinate)){
-                        hasWumpus+=Math.pow(1.0/15, combination.size())*Math.pow(1-1.0/15, frontier.size()-combination.size());
-                    }else {
-                        noWumpus+=Math.pow(1.0/15, combination.size())*Math.pow(1-1.0/15, frontier.size()-combination.size());
-                    }
-                }
-            }
-            hasWumpus/= (hasWumpus+noWumpus) >0 ? hasWumpus+noWumpus : 1;
-            map.put(coordinate, hasWumpus);
+    private void updateBelief(){
+        w.getVisitedMask(newlyVisited);
+        newlyVisited.andNot(belief.getVisited());
+        for (int cell=newlyVisited.nextSetBit(0); cell>=0; cell=newlyVisited.nextSetBit(cell+1)){
+            int x=g.x(cell);
+            int y=g.y(cell);
+            belief.visit(cell, w.hasBreeze(x, y), w.hasStench(x, y));
+            kb.visit(cell, w.hasBreeze(x, y), w.hasStench(x, y), w.hasPit(x, y));
+        }
+        if (w.isInPit()){
+            belief.pitFound(currentPosition());
+        }
+        if (!w.wumpusAlive()){
+            belief.wumpusKilled();
+            kb.wumpusKilled();
         }
-        return map;
     }
 
     /**
-     * Find a path to destination room and move
-     * @param destination
+     * Calculate pit and wumpus probabilities of the frontier rooms, or
+     * take them from the precomputed table, or from the shared cache if
+     * another agent has already made the same observations. If the
+     * deadline passes first, estimate them from the knowledge base
+     * @return AgentOptions.DECISION_* tier of the probabilities
      */
-    private void moveToDestination(Coordinate destination){
-        if (destination==currentPosition()){
-            return;
-        }
-        if (!currentPosition().neighbors.contains(destination)){
-            //search tree method
-            PathNode root=new PathNode(null, currentPosition());
-            List<PathNode> leaves=new ArrayList<>();
-            buildPath(root, destination, leaves);
-            PathNode destNode=leaves.get(0);
-            List<Coordinate> path=destNode.parentCoordinates;
-            path.add(destNode.coordinate);
-            if (leaves.size()>1){
-                for (int i=1; i<leaves.size(); i++){
-                    List<Coordinate> newPath=leaves.get(i).parentCoordinates;
-                    newPath.add(leaves.get(i).coordinate);
-                    if (pathLength(newPath)<pathLength(path)){
-                        path=newPath;
-                    }
-                }
-            }
-            path.add(destNode.coordinate);
-            for (int i=1; i<path.size();i++){
-                moveToNeighbor(path.get(i));
+    private int computePosteriors(){
+        PosteriorTable table=options.getPosteriorTable();
+        int total=options.getPitCount();
+        if (table!=null && total==MapGenerator.PITS && table.lookup(belief, pitProbs, wumpusProbs)){
+            return AgentOptions.DECISION_CACHED;
+        }
+        PosteriorCache cache=options.getPosteriorCache();
+        PosteriorCache.Key key=null;
+        if (cache!=null){
+            key=PosteriorCache.keyOf(belief);
+            PosteriorCache.Entry entry=cache.get(key);
+            if (entry!=null){
+                entry.copyTo(pitProbs, wumpusProbs);
+                return AgentOptions.DECISION_CACHED;
             }
         }
-        moveToNeighbor(destination);
-        //move
-        //Update frontier and known
-        if (!known.contains(destination)){
-            known.add(destination);
+        int pits=FrontierInference.UNKNOWN_PITS;
+        if (total!=FrontierInference.UNKNOWN_PITS){
+            pits=Math.max(0, total-belief.getKnownPits().cardinality());
         }
-
-        frontier.remove(destination);
-        for (Coordinate neighbor : destination.neighbors){
-            if (w.isUnknown(neighbor.x, neighbor.y) && !frontier.contains(neighbor)){
-                frontier.add(neighbor);
+        if (timed){
+            if (System.nanoTime()-deadline>=0 || !belief.pitProbabilities(pits, pitProbs, pitErrors, deadline)){
+                kb.estimate(belief.getFrontier(), pitProbs, wumpusProbs);
+                return AgentOptions.DECISION_APPROXIMATE;
             }
+        }else {
+            belief.pitProbabilities(pits, pitProbs, pitErrors);
         }
-    }
-
-    private void shootWumpus(Coordinate wumpus){
-        Coordinate destination=null;
-        int distance=7;
-        for (Coordinate coordinate : wumpus.neighbors){
-            int newDistance=manhattan(coordinate, coordinates[w.getPlayerX()-1][w.getPlayerY()-1]);
-            if (w.isVisited(coordinate.x, coordinate.y) && newDistance<distance){
-                destination=coordinate;
-                distance=newDistance;
-            }
-        }
-        moveToDestination(destination);
-        if (wumpus==destination.up){
-            turnDir(World.DIR_UP);
-            w.doAction(World.A_SHOOT);
-            return;
+        belief.wumpusProbabilities(wumpusProbs);
+        if (isSampled()){
+            //Sampled probabilities vary between runs, so they are not cached
+            return AgentOptions.DECISION_APPROXIMATE;
         }
-        if (wumpus==destination.down){
-            turnDir(World.DIR_DOWN);
-            w.doAction(World.A_SHOOT);
-            return;
-        }
-        if (wumpus==destination.left){
-            turnDir(World.DIR_LEFT);
-            w.doAction(World.A_SHOOT);
-            return;
-        }
-        if (wumpus==destination.right){
-            turnDir(World.DIR_RIGHT);
-            w.doAction(World.A_SHOOT);
-            return;
+        if (cache!=null){
+            cache.put(key, belief.getFrontier(), pitProbs, wumpusProbs);
         }
+        return AgentOptions.DECISION_INFERRED;
     }
+
     /**
-     * Formalize combination tree to combination lists
-     * @param max
-     * @return
+     * Check if a frontier pit probability was sampled instead of counted
+     * @return true if a probability has a confidence interval
      */
-    private List<List<Coordinate>> findCombinations(int max){
-        List<List<Coordinate>> result = new ArrayList<>();
-        result.add(new ArrayList<>());
-        for (int i=1 ; i<=max ; i++){
-            for (Coordinate coordinate : frontier){
-                TreeNode root=new TreeNode();
-                root.coordinate=coordinate;
-                root.depth=1;
-                List<TreeNode> leaves=new ArrayList<>();
-                buildCombinationTree(i, root, leaves);
-                for (TreeNode node : leaves){
-                    List<Coordinate> combination=new ArrayList<>();
-                    TreeNode next=node;
-                    while (next != null){
-                        combination.add(next.coordinate);
-                        next=next.parent;
-                    }
-                    result.add(combination);
-                }
+    private boolean isSampled(){
+        BitBoard frontier=belief.getFrontier();
+        for (int room=frontier.nextSetBit(0); room>=0; room=frontier.nextSetBit(room+1)){
+            if (pitErrors[room]>0){
+                return true;
             }
         }
-        return result;
+        return false;
     }
 
     /**
-     * Check if a combination match known breeze info
-     * @param pitsAssumption
-     * @return
+     * Move to destination room with the cheapest move and turn actions
+     * through known rooms
+     * @param destination cell index of the room
      */
-
-    private boolean matchKnownBreeze(List<Coordinate> pitsAssumption){
-        List<Coordinate> assumptBreezes=new ArrayList<>();
-        for (Coordinate assumpt : pitsAssumption){
-            for (Coordinate neighbor : assumpt.neighbors){
-                if (known.contains(neighbor) && !assumptBreezes.contains(neighbor)){
-                    assumptBreezes.add(neighbor);
-                }
-            }
-        }
-        for (Coordinate knownPit : knownPits){
-            for (Coordinate neighbor : knownPit.neighbors){
-                if (known.contains(neighbor) && !assumptBreezes.contains(neighbor)){
-                    assumptBreezes.add(neighbor);
-                }
-            }
-        }
-        List<Coordinate> knownFrontier=new ArrayList<>();
-        for (Coordinate front : frontier){
-            for (Coordinate neighbor : front.neighbors){
-                if (known.contains(neighbor) && !knownFrontier.contains(neighbor)){
-                    knownFrontier.add(neighbor);
-                }
-            }
-        }
-        for (Coordinate knownFront : knownFrontier){
-            if (assumptBreezes.contains(knownFront) && !w.hasBreeze(knownFront.x, knownFront.y)){
-                return false;
-            }
-            if (!assumptBreezes.contains(knownFront) && w.hasBreeze(knownFront.x, knownFront.y)){
-                return false;
-            }
-        }
-        return true;
+    private void moveToDestination(int destination){
+        followRoute(destination, -1);
+        //frontier and known are updated from the belief state next turn
     }
 
     /**
-     * Check if a combination match unknown stench info
-     * @param wumpusAssumption
-     * @return
+     * Plan the cheapest actions to a room and execute them, until a
+     * move does not succeed
+     * @param goal cell index of the room
+     * @param goalDir direction to face in the room, or -1 for any
+     * @return true if the player reached the room
      */
-
-    private boolean matchKnownStench(List<Coordinate> wumpusAssumption){
-        List<Coordinate> assumptStenchs=new ArrayList<>();
-        for (Coordinate assumpt : wumpusAssumption){
-            for (Coordinate neighbor : assumpt.neighbors){
-                if (known.contains(neighbor) && !assumptStenchs.contains(neighbor)){
-                    assumptStenchs.add(neighbor);
-                }
-            }
-        }
-        List<Coordinate> knownFrontier=new ArrayList<>();
-        for (Coordinate front : frontier){
-            for (Coordinate neighbor : front.neighbors){
-                if (known.contains(neighbor) && !knownFrontier.contains(neighbor)){
-                    knownFrontier.add(neighbor);
-                }
-            }
-        }
-        for (Coordinate knownFront : knownFrontier){
-            if (assumptStenchs.contains(knownFront) && !w.hasStench(knownFront.x, knownFront.y)){
-                return false;
-            }
-            if (!assumptStenchs.contains(knownFront) && w.hasStench(knownFront.x, knownFront.y)){
+    private boolean followRoute(int goal, int goalDir){
+        int n=planner.plan(belief.getVisited(), belief.getKnownPits(), currentPosition(), w.getDirection(), goal, goalDir, route);
+        for (int i=0; i<n; i++){
+            int result=w.doAction(route[i]);
+            if (route[i]==World.OP_MOVE && result!=World.RES_MOVED){
                 return false;
             }
         }
-        return true;
+        return n>=0;
     }
 
     /**
-     * Manhattan distance
-     * @param start
-     * @param end
-     * @return
+     * Go to a visited neighbor of a room and shoot into the room
+     * @param wumpus cell index of the room
+     * @return true if the wumpus was killed
      */
-    private int manhattan(Coordinate start, Coordinate end){
-        return Math.abs(start.x-end.x)+Math.abs(end.y-end.y);
-    }
-
-    /**
-     * Do move and turn actions to move to a neighbor
-     * @param neighbor
-     */
-    private void moveToNeighbor(Coordinate neighbor){
-        int x=w.getPlayerX();
-        int y=w.getPlayerY();
-        Coordinate current=coordinates[x-1][y-1];
-        if (neighbor==current.up){
-            turnDir(World.DIR_UP);
-            w.doAction(World.A_MOVE);
-            return;
-        }
-        if (neighbor==current.down){
-            turnDir(World.DIR_DOWN);
-            w.doAction(World.A_MOVE);
-            return;
-        }
-        if (neighbor==current.left){
-            turnDir(World.DIR_LEFT);
-            w.doAction(World.A_MOVE);
-            return;
+    private boolean shootWumpus(int wumpus){
+        //Shoot from the visited neighbor with the cheapest route from the player
+        int destination=-1;
+        int dir=-1;
+        int cost=Integer.MAX_VALUE;
+        for (int room : g.neighbors(wumpus)){
+            if (!belief.getVisited().get(room)){
+                continue;
+            }
+            int roomDir=directionTo(room, wumpus);
+            planner.plan(belief.getVisited(), belief.getKnownPits(), currentPosition(), w.getDirection(), room, roomDir, route);
+            int newCost=planner.getLastCost();
+            if (newCost>=0 && newCost<cost){
+                destination=room;
+                dir=roomDir;
+                cost=newCost;
+            }
         }
-        if (neighbor==current.right){
-            turnDir(World.DIR_RIGHT);
-            w.doAction(World.A_MOVE);
-            return;
+        if (destination>=0 && followRoute(destination, dir)){
+            return w.doAction(World.OP_SHOOT)==World.RES_KILLED_WUMPUS;
         }
+        return false;
     }
 
     /**
-     * Adjust dir to move to a neighbor
-     * @param dir
+     * Direction from a room to a neighbor room
+     * @param from cell index of the room
+     * @param to cell index of the neighbor
+     * @return World.DIR_* direction
      */
-    private void turnDir(int dir){
-        if (dir != w.getDirection()){
-            switch (dir-w.getDirection()){
-                case 1:
-                case -3:
-                    w.doAction(World.A_TURN_RIGHT);
-                    break;
-                case 2:
-                case -2:
-                    w.doAction(World.A_TURN_RIGHT);
-                    w.doAction(World.A_TURN_RIGHT);
-                    break;
-                case 3:
-                case -1:
-                    w.doAction(World.A_TURN_LEFT);
-                    break;
-            }
-        }
+    private int directionTo(int from, int to){
+        if (to==from+size){
+            return World.DIR_UP;
+        }else if (to==from-size){
+            return World.DIR_DOWN;
+        }else if (to==from-1){
+            return World.DIR_LEFT;
+        }
+        return World.DIR_RIGHT;
     }
 
     /**
-     * Build a tree to get frontier combinations for probability calculation
-     * @param maxdepth
-     * @param root
-     * @param leaves
+     * Cell index of the player
+     * @return cell index of the room the player is in
      */
-    private void buildCombinationTree(int maxdepth, TreeNode root, List<TreeNode> leaves){
-        if (maxdepth<2){
-            leaves.add(root);
-            return;
-        }
-        int index=frontier.indexOf(root.coordinate);
-        for (int i=index+1; i<frontier.size(); i++){
-            TreeNode node=new TreeNode();
-            node.coordinate=frontier.get(i);
-            node.parent=root;
-            node.depth=root.depth+1;
-            root.nexts.add(node);
-            buildCombinationTree(maxdepth-1, node, leaves);
-        }
-    }
-
-    private Coordinate currentPosition(){
-        return coordinates[w.getPlayerX()-1][w.getPlayerY()-1];
-    }
-
-    private void buildPath(PathNode root, Coordinate destination, List<PathNode> validLeaves){
-        if (root.coordinate.neighbors.contains(destination)){
-            validLeaves.add(root);
-            return;
-        }
-        for (Coordinate neighbor : root.coordinate.neighbors){
-            if (known.contains(neighbor) && !root.parentCoordinates.contains(neighbor)){
-                PathNode subNode=new PathNode(root, neighbor);
-                root.nexts.add(subNode);
-                buildPath(subNode, destination, validLeaves);
-            }
-        }
-    }
-
-    private int pathLength(List<Coordinate> path){
-        int length=0;
-        for (Coordinate room : path){
-            if (knownPits.contains(room)){
-                length+=17;
-            }else {
-                length++;
-            }
-        }
-        return length;
+    private int currentPosition(){
+        return g.index(w.getPlayerX(), w.getPlayerY());
     }
 }
-
-/**
- * Tree node for building combination tree
- */
-class TreeNode{
-    TreeNode parent=null;
-    MyAgent.Coordinate coordinate;
-    int depth;
-    List<TreeNode> nexts=new ArrayList<>();
-}
-
-/**
- *Tree node for searching move path
- */
-class PathNode{
-    PathNode parent=null;
-    MyAgent.Coordinate coordinate;
-    List<PathNode> nexts=new ArrayList<>();
-    List<MyAgent.Coordinate> parentCoordinates=new ArrayList<>();
-    PathNode(PathNode parent, MyAgent.Coordinate coordinate){
-        this.parent=parent;
-        this.coordinate=coordinate;
-        if (parent!=null){
-            parentCoordinates.addAll(parent.parentCoordinates);
-            parentCoordinates.add(parent.coordinate);
-        }
-    }
-}
\ No newline at end of file
@@ -0,0 +1,257 @@
+package wumpusworld;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of pit and Wumpus posteriors, keyed by the observation
+ * state an agent is in. Many games reach the same observations, so the
+ * cache is shared by all agents in a simulation run (see AgentOptions).
+ *
+ * The cache is split into segments, each an LRU map guarded by its own
+ * lock, so that agents running on different threads rarely wait for
+ * each other.
+ */
+public class PosteriorCache
+{
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Compact, canonical encoding of an observation state: the world
+     * size, if the Wumpus is alive, and the visited, breeze, stench and
+     * known pit masks. The player position and the order in which the
+     * squares were visited are not part of the key.
+     */
+    public static final class Key
+    {
+        private final long[] words;
+        private final int hash;
+
+        /**
+         * Creates a key from an encoded observation state.
+         *
+         * @param words Encoded state. The array is kept by the key.
+         */
+        Key(long[] words)
+        {
+            this.words = words;
+            long h = 0;
+            for (long v : words)
+            {
+                h = (h ^ v) * 0x9E3779B97F4A7C15L;
+            }
+            hash = (int)(h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return k.hash == hash && Arrays.equals(k.words, words);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * Cached posteriors for the frontier squares of one observation state.
+     */
+    public static final class Entry
+    {
+        private final int[] cells;
+        private final double[] pit;
+        private final double[] wumpus;
+
+        /**
+         * Copies the posteriors of all frontier cells.
+         *
+         * @param frontier Frontier squares
+         * @param pitProbabilities Pit posteriors, indexed by cell
+         * @param wumpusProbabilities Wumpus posteriors, indexed by cell
+         */
+        Entry(BitBoard frontier, double[] pitProbabilities, double[] wumpusProbabilities)
+        {
+            int n = frontier.cardinality();
+            cells = new int[n];
+            pit = new double[n];
+            wumpus = new double[n];
+            int i = 0;
+            for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                cells[i] = f;
+                pit[i] = pitProbabilities[f];
+                wumpus[i] = wumpusProbabilities[f];
+                i++;
+            }
+        }
+
+        /**
+         * Writes the cached posteriors to the output arrays.
+         *
+         * @param pitProbabilities Pit posteriors, indexed by cell
+         * @param wumpusProbabilities Wumpus posteriors, indexed by cell
+         */
+        public void copyTo(double[] pitProbabilities, double[] wumpusProbabilities)
+        {
+            for (int i = 0; i < cells.length; i++)
+            {
+                pitProbabilities[cells[i]] = pit[i];
+                wumpusProbabilities[cells[i]] = wumpus[i];
+            }
+        }
+    }
+
+    /**
+     * One LRU segment of the cache.
+     */
+    private static final class Segment extends LinkedHashMap<Key, PosteriorCache.Entry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, PosteriorCache.Entry> eldest)
+        {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity Maximum number of observation states kept
+     */
+    public PosteriorCache(int capacity)
+    {
+        segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Creates the key for the current observations of a belief state.
+     *
+     * @param b Belief state
+     * @return Key
+     */
+    public static Key keyOf(BeliefState b)
+    {
+        BitBoard visited = b.getVisited();
+        int n = visited.getWordCount();
+        long[] words = new long[1 + 4 * n];
+        words[0] = visited.getSize() | (b.isWumpusAlive() ? 1L << 32 : 0);
+        for (int i = 0; i < n; i++)
+        {
+            words[1 + i] = visited.getWord(i);
+            words[1 + n + i] = b.getBreeze().getWord(i);
+            words[1 + 2 * n + i] = b.getStench().getWord(i);
+            words[1 + 3 * n + i] = b.getKnownPits().getWord(i);
+        }
+        return new Key(words);
+    }
+
+    /**
+     * Looks up the posteriors for an observation state.
+     *
+     * @param key Observation state
+     * @return Cached posteriors, or null if not in the cache
+     */
+    public Entry get(Key key)
+    {
+        Segment s = segment(key);
+        Entry e;
+        synchronized (s)
+        {
+            e = s.get(key);
+        }
+        if (e != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        return e;
+    }
+
+    /**
+     * Adds the posteriors for an observation state.
+     *
+     * @param key Observation state
+     * @param frontier Frontier squares
+     * @param pitProbabilities Pit posteriors, indexed by cell
+     * @param wumpusProbabilities Wumpus posteriors, indexed by cell
+     */
+    public void put(Key key, BitBoard frontier, double[] pitProbabilities, double[] wumpusProbabilities)
+    {
+        Entry e = new Entry(frontier, pitProbabilities, wumpusProbabilities);
+        Segment s = segment(key);
+        synchronized (s)
+        {
+            s.put(key, e);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found the observation state.
+     *
+     * @return Number of hits
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find the observation state.
+     *
+     * @return Number of misses
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of observation states in the cache.
+     *
+     * @return Number of entries
+     */
+    public int size()
+    {
+        int n = 0;
+        for (Segment s : segments)
+        {
+            synchronized (s)
+            {
+                n += s.size();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the segment an observation state belongs to.
+     */
+    private Segment segment(Key key)
+    {
+        int h = key.hash;
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+}
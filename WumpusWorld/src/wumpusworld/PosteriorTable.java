@@ -0,0 +1,269 @@
+package wumpusworld;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Precomputed pit and Wumpus posteriors for all reachable observation
+ * states in the 4x4 worlds created by MapGenerator (three pits, one
+ * Wumpus, none of them in square (1,1)). The table is written by
+ * PosteriorTableGenerator and memory-mapped when it is opened, so a
+ * lookup is a few reads from the page cache.
+ *
+ * Pits and the Wumpus are placed independently, so the posteriors are
+ * stored in two hash tables: pit posteriors keyed by the visited,
+ * breeze and known pit squares, and Wumpus posteriors keyed by the
+ * visited and stench squares. A state and its mirror image along the
+ * diagonal through (1,1) share an entry.
+ *
+ * File layout (big-endian):
+ * <pre>
+ * int  MAGIC
+ * int  size of the world
+ * int  width, the maximum number of frontier squares
+ * int  number of pit slots
+ * int  number of Wumpus slots
+ * pit slots, then Wumpus slots:
+ *   long key (0 for an empty slot)
+ *   width x char, posterior * 65535 for each frontier square in cell order
+ * </pre>
+ */
+public class PosteriorTable
+{
+    public static final int MAGIC = 0x57505431;
+    public static final int SIZE = 4;
+    public static final String DEFAULT_FILE = "posteriors4x4.bin";
+
+    static final int HEADER = 20;
+    static final double SCALE = 65535.0;
+
+    private final MappedByteBuffer buf;
+    private final int slotBytes;
+    private final int pitSlots;
+    private final int wumpusSlots;
+    private final int wumpusOffset;
+
+    private static final int[] TRANSPOSE = new int[SIZE * SIZE];
+    private static final long[] NEIGHBORS = new long[SIZE * SIZE];
+    static
+    {
+        BoardGeometry g = BoardGeometry.of(SIZE);
+        for (int c = 0; c < g.getCells(); c++)
+        {
+            TRANSPOSE[c] = g.index(g.y(c), g.x(c));
+            for (int n : g.neighbors(c))
+            {
+                NEIGHBORS[c] |= 1L << n;
+            }
+        }
+    }
+
+    /**
+     * Opens and memory-maps a posterior table.
+     *
+     * @param file Table file
+     * @throws IOException If the file could not be read or is not a posterior table
+     */
+    public PosteriorTable(File file) throws IOException
+    {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try
+        {
+            buf = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+        }
+        finally
+        {
+            f.close();
+        }
+        if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != SIZE)
+        {
+            throw new IOException("Not a posterior table: " + file);
+        }
+        int width = buf.getInt(8);
+        pitSlots = buf.getInt(12);
+        wumpusSlots = buf.getInt(16);
+        slotBytes = slotBytes(width);
+        long pitEnd = HEADER + (long)pitSlots * slotBytes;
+        if (buf.capacity() != pitEnd + (long)wumpusSlots * slotBytes)
+        {
+            throw new IOException("Truncated posterior table: " + file);
+        }
+        wumpusOffset = (int)pitEnd;
+    }
+
+    /**
+     * Looks up the posteriors for the observations of a belief state.
+     *
+     * @param b Belief state
+     * @param pitProbabilities Output, indexed by cell. Only frontier cells are written.
+     * @param wumpusProbabilities Output, indexed by cell. Only frontier cells are written.
+     * @return True if the state was found, false if it is not in the table
+     */
+    public boolean lookup(BeliefState b, double[] pitProbabilities, double[] wumpusProbabilities)
+    {
+        if (b.getVisited().getSize() != SIZE) return false;
+        long visited = b.getVisited().getWord(0);
+
+        long pitKey = pitKey(visited, b.getBreeze().getWord(0), b.getKnownPits().getWord(0));
+        int pitSlot = find(pitKey, HEADER, pitSlots);
+        if (pitSlot < 0) return false;
+
+        long wumpusKey = wumpusKey(visited, b.getStench().getWord(0));
+        int wumpusSlot = -1;
+        if (b.isWumpusAlive())
+        {
+            wumpusSlot = find(wumpusKey, wumpusOffset, wumpusSlots);
+            if (wumpusSlot < 0) return false;
+        }
+
+        read(pitSlot, visited, pitKey != canonical(pitKey), pitProbabilities);
+        if (wumpusSlot >= 0)
+        {
+            read(wumpusSlot, visited, wumpusKey != canonical(wumpusKey), wumpusProbabilities);
+        }
+        else
+        {
+            for (long f = frontier(visited); f != 0; f &= f - 1)
+            {
+                wumpusProbabilities[Long.numberOfTrailingZeros(f)] = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @return Position of the slot in the file, or -1 if the key is not in the table
+     */
+    private int find(long key, int offset, int slots)
+    {
+        long canon = canonical(key);
+        int i = home(canon, slots);
+        while (true)
+        {
+            int pos = offset + i * slotBytes;
+            long k = buf.getLong(pos);
+            if (k == canon) return pos;
+            if (k == 0) return -1;
+            if (++i == slots) i = 0;
+        }
+    }
+
+    /**
+     * Copies the posteriors of a slot to the frontier cells.
+     */
+    private void read(int pos, long visited, boolean transposed, double[] out)
+    {
+        long f = frontier(transposed ? transpose(visited) : visited);
+        int p = pos + 8;
+        for (; f != 0; f &= f - 1)
+        {
+            int cell = Long.numberOfTrailingZeros(f);
+            if (transposed) cell = TRANSPOSE[cell];
+            out[cell] = buf.getChar(p) / SCALE;
+            p += 2;
+        }
+    }
+
+    /**
+     * Returns the key of a pit entry.
+     *
+     * @param visited Visited squares
+     * @param breeze Visited squares with a breeze
+     * @param knownPits Visited squares with a pit
+     * @return Key
+     */
+    static long pitKey(long visited, long breeze, long knownPits)
+    {
+        return visited | breeze << 16 | knownPits << 32;
+    }
+
+    /**
+     * Returns the key of a Wumpus entry.
+     *
+     * @param visited Visited squares
+     * @param stench Visited squares with a stench
+     * @return Key
+     */
+    static long wumpusKey(long visited, long stench)
+    {
+        return visited | stench << 16;
+    }
+
+    /**
+     * Returns the key under which an entry is stored: the smaller of
+     * the key and its mirror image.
+     *
+     * @param key Key made of 16-bit masks
+     * @return Canonical key
+     */
+    static long canonical(long key)
+    {
+        long t = 0;
+        for (int shift = 0; shift < 64; shift += 16)
+        {
+            t |= transpose((key >>> shift) & 0xFFFF) << shift;
+        }
+        return Math.min(key, t);
+    }
+
+    /**
+     * Mirrors a set of squares along the diagonal through (1,1).
+     *
+     * @param mask Set of squares
+     * @return Mirrored set
+     */
+    static long transpose(long mask)
+    {
+        long t = 0;
+        for (; mask != 0; mask &= mask - 1)
+        {
+            t |= 1L << TRANSPOSE[Long.numberOfTrailingZeros(mask)];
+        }
+        return t;
+    }
+
+    /**
+     * Returns the unvisited squares next to a visited square.
+     *
+     * @param visited Visited squares
+     * @return Frontier squares
+     */
+    static long frontier(long visited)
+    {
+        long adj = 0;
+        for (long v = visited; v != 0; v &= v - 1)
+        {
+            adj |= NEIGHBORS[Long.numberOfTrailingZeros(v)];
+        }
+        return adj & ~visited;
+    }
+
+    /**
+     * Returns the first slot to probe for a canonical key.
+     *
+     * @param key Canonical key
+     * @param slots Number of slots
+     * @return Slot index
+     */
+    static int home(long key, int slots)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)((h >>> 1) % slots);
+    }
+
+    /**
+     * Returns the number of bytes per slot.
+     *
+     * @param width Maximum number of frontier squares
+     * @return Bytes per slot
+     */
+    static int slotBytes(int width)
+    {
+        return 8 + 2 * width;
+    }
+}
@@ -0,0 +1,305 @@
+package wumpusworld;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the posterior table used by PosteriorTable. Every connected set
+ * of visited squares that contains (1,1) is combined with every placement
+ * of the three pits and the Wumpus that MapGenerator can make. The
+ * placements are counted per observation state, which gives the exact
+ * posteriors since all placements are equally likely.
+ *
+ * Usage: java wumpusworld.PosteriorTableGenerator [file]
+ */
+public class PosteriorTableGenerator
+{
+    private static final int SIZE = PosteriorTable.SIZE;
+    private static final int CELLS = SIZE * SIZE;
+    private static final int PITS = MapGenerator.PITS;
+
+    private final long[] neighbors = new long[CELLS];
+    private final int width;
+
+    private final Entries pitEntries;
+    private final Entries wumpusEntries;
+
+    /**
+     * Growable list of keys and their posteriors.
+     */
+    private static class Entries
+    {
+        final int width;
+        long[] keys = new long[1024];
+        char[] values;
+        int count;
+
+        Entries(int width)
+        {
+            this.width = width;
+            values = new char[keys.length * width];
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param key Canonical key
+         * @param counts Placements with a pit or the Wumpus in each frontier square, and the total last
+         */
+        void add(long key, int[] counts)
+        {
+            if (count == keys.length)
+            {
+                long[] k = new long[count * 2];
+                System.arraycopy(keys, 0, k, 0, count);
+                keys = k;
+                char[] v = new char[k.length * width];
+                System.arraycopy(values, 0, v, 0, count * width);
+                values = v;
+            }
+            double total = counts[width];
+            keys[count] = key;
+            for (int i = 0; i < width; i++)
+            {
+                values[count * width + i] = (char)Math.round(counts[i] / total * PosteriorTable.SCALE);
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Runs the generator.
+     *
+     * @param args Optional path of the table file
+     * @throws IOException If the file could not be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String file = args.length > 0 ? args[0] : PosteriorTable.DEFAULT_FILE;
+        long start = System.currentTimeMillis();
+        PosteriorTableGenerator gen = new PosteriorTableGenerator();
+        gen.generate();
+        gen.write(file);
+        System.out.println("Wrote " + gen.pitEntries.count + " pit states and " + gen.wumpusEntries.count
+                + " Wumpus states to " + file + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Creates a new generator.
+     */
+    public PosteriorTableGenerator()
+    {
+        BoardGeometry g = BoardGeometry.of(SIZE);
+        for (int c = 0; c < CELLS; c++)
+        {
+            for (int n : g.neighbors(c))
+            {
+                neighbors[c] |= 1L << n;
+            }
+        }
+
+        //The widest frontier decides the slot size
+        int w = 0;
+        for (long v = 1; v < 1L << CELLS; v += 2)
+        {
+            if (connected(v)) w = Math.max(w, Long.bitCount(PosteriorTable.frontier(v)));
+        }
+        width = w;
+        pitEntries = new Entries(width);
+        wumpusEntries = new Entries(width);
+    }
+
+    /**
+     * Counts the placements for all observation states.
+     */
+    public void generate()
+    {
+        //All pit placements, none of them in (1,1)
+        long[] placements = new long[binomial(CELLS - 1, PITS)];
+        int n = 0;
+        for (long p = (1L << PITS) - 1; p < 1L << (CELLS - 1); p = nextSubset(p))
+        {
+            placements[n++] = p << 1;
+        }
+
+        Map<Long, int[]> counts = new HashMap<Long, int[]>();
+        int[] frontier = new int[width];
+        for (long visited = 1; visited < 1L << CELLS; visited += 2)
+        {
+            if (!connected(visited)) continue;
+            int fn = 0;
+            for (long f = PosteriorTable.frontier(visited); f != 0; f &= f - 1)
+            {
+                frontier[fn++] = Long.numberOfTrailingZeros(f);
+            }
+
+            //Pits
+            counts.clear();
+            for (long pits : placements)
+            {
+                long key = PosteriorTable.pitKey(visited, adjacent(pits) & visited, pits & visited);
+                if (PosteriorTable.canonical(key) != key) continue;
+                count(counts, key, frontier, fn, pits);
+            }
+            flush(counts, pitEntries);
+
+            //Wumpus. It has not been met, so it is not in a visited square.
+            counts.clear();
+            for (int wumpus = 1; wumpus < CELLS; wumpus++)
+            {
+                if ((visited & 1L << wumpus) != 0) continue;
+                long key = PosteriorTable.wumpusKey(visited, neighbors[wumpus] & visited);
+                if (PosteriorTable.canonical(key) != key) continue;
+                count(counts, key, frontier, fn, 1L << wumpus);
+            }
+            flush(counts, wumpusEntries);
+        }
+    }
+
+    /**
+     * Writes the table file.
+     *
+     * @param file Path of the file
+     * @throws IOException If the file could not be written
+     */
+    public void write(String file) throws IOException
+    {
+        int pitSlots = slots(pitEntries.count);
+        int wumpusSlots = slots(wumpusEntries.count);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try
+        {
+            out.writeInt(PosteriorTable.MAGIC);
+            out.writeInt(SIZE);
+            out.writeInt(width);
+            out.writeInt(pitSlots);
+            out.writeInt(wumpusSlots);
+            writeSlots(out, pitEntries, pitSlots);
+            writeSlots(out, wumpusEntries, wumpusSlots);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Adds one placement to the counts of an observation state.
+     */
+    private static void count(Map<Long, int[]> counts, long key, int[] frontier, int fn, long objects)
+    {
+        int[] c = counts.get(key);
+        if (c == null)
+        {
+            c = new int[frontier.length + 1];
+            counts.put(key, c);
+        }
+        for (int i = 0; i < fn; i++)
+        {
+            if ((objects & 1L << frontier[i]) != 0) c[i]++;
+        }
+        c[frontier.length]++;
+    }
+
+    /**
+     * Moves the counted observation states to an entry list.
+     */
+    private static void flush(Map<Long, int[]> counts, Entries entries)
+    {
+        for (Map.Entry<Long, int[]> e : counts.entrySet())
+        {
+            entries.add(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Writes the entries as an open addressing hash table with
+     * linear probing.
+     */
+    private void writeSlots(DataOutputStream out, Entries entries, int slots) throws IOException
+    {
+        long[] keys = new long[slots];
+        int[] index = new int[slots];
+        for (int e = 0; e < entries.count; e++)
+        {
+            int i = PosteriorTable.home(entries.keys[e], slots);
+            while (keys[i] != 0)
+            {
+                if (++i == slots) i = 0;
+            }
+            keys[i] = entries.keys[e];
+            index[i] = e;
+        }
+        for (int i = 0; i < slots; i++)
+        {
+            out.writeLong(keys[i]);
+            for (int j = 0; j < width; j++)
+            {
+                out.writeChar(keys[i] != 0 ? entries.values[index[i] * width + j] : 0);
+            }
+        }
+    }
+
+    /**
+     * Checks if a set of squares that contains (1,1) is connected.
+     */
+    private boolean connected(long set)
+    {
+        long seen = 1;
+        long added = 1;
+        while (added != 0)
+        {
+            added = adjacent(added) & set & ~seen;
+            seen |= added;
+        }
+        return seen == set;
+    }
+
+    /**
+     * Returns all squares next to a square in a set.
+     */
+    private long adjacent(long set)
+    {
+        long adj = 0;
+        for (; set != 0; set &= set - 1)
+        {
+            adj |= neighbors[Long.numberOfTrailingZeros(set)];
+        }
+        return adj;
+    }
+
+    /**
+     * Returns the number of slots for a table with a load factor of 0.75.
+     */
+    private static int slots(int entries)
+    {
+        return entries + entries / 3 + 1;
+    }
+
+    /**
+     * Returns the next larger number with the same number of set bits.
+     */
+    private static long nextSubset(long s)
+    {
+        long c = s & -s;
+        long r = s + c;
+        return (((r ^ s) >>> 2) / c) | r;
+    }
+
+    /**
+     * Returns the binomial coefficient n over k.
+     */
+    private static int binomial(int n, int k)
+    {
+        long b = 1;
+        for (int i = 0; i < k; i++)
+        {
+            b = b * (n - i) / (i + 1);
+        }
+        return (int)b;
+    }
+}
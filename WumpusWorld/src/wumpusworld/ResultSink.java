@@ -0,0 +1,28 @@
+package wumpusworld;
+
+import java.io.IOException;
+
+/**
+ * Receives the result of each simulated game, for example to write it
+ * to a file. Results can be added from any thread, and adding a result
+ * must not wait for I/O.
+ */
+public interface ResultSink
+{
+    /**
+     * Adds the result of a game.
+     *
+     * @param game Number of the game in the run, starting at 0
+     * @param map The map of the game
+     * @param r Result of the game
+     */
+    public void add(long game, MapView map, GameResult r);
+
+    /**
+     * Writes the results that have been added and releases the sink.
+     * Results added after close are ignored.
+     *
+     * @throws IOException If a result could not be written
+     */
+    public void close() throws IOException;
+}
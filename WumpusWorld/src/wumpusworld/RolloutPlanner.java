@@ -0,0 +1,491 @@
+package wumpusworld;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chooses a frontier square by simulating short games from each of the
+ * most promising candidates, in worlds sampled from what the agent knows.
+ *
+ * A sampled world keeps everything the agent has seen and places the
+ * hidden pits, Wumpus and gold at random. The pits are drawn by a
+ * Metropolis chain over placements of the remaining pits in the squares
+ * that can have one: a step moves a random pit to a random square, and is
+ * rejected if a breeze would be left unexplained. All consistent
+ * placements are equally likely, as in MapGenerator. The Wumpus is drawn
+ * from its candidate squares and the gold from the unvisited squares.
+ *
+ * A rollout copies the real world into a reusable world, replaces its
+ * hidden layers with a sample, walks to the candidate and then to a few
+ * more frontier squares chosen by a cheap policy: a proven safe square
+ * if there is one, otherwise the square with the lowest estimated danger.
+ * The value of a rollout is the change in score. The candidate with the
+ * best mean value is chosen.
+ *
+ * Rollouts are split between workers that run on the common fork/join
+ * pool. Each worker owns its world, knowledge base, route planner and
+ * chain, so a rollout allocates nothing. The rollouts stop at the rollout
+ * count or the time budget, whichever comes first. An instance must only
+ * be used by one agent.
+ */
+public class RolloutPlanner
+{
+    //Frontier squares with the lowest danger that get rollouts
+    private static final int MAX_CANDIDATES = 6;
+
+    //Chain steps per possible pit square between two sampled worlds
+    private static final int MIX_STEPS = 2;
+
+    private final BoardGeometry g;
+    private final int cells;
+    private final int totalPits;
+    private final int rollouts;
+    private final int depth;
+    private final long timeBudget;
+    private final ForkJoinPool pool;
+    private final Worker[] workers;
+    private long totalRollouts;
+
+    //Decision state, read by the workers
+    private World world;
+    private KnowledgeBase kb;
+    private final int[] candidates;
+    private int candidateCount;
+    private final BitBoard fixedPits;
+    private final int[] pitSquares;
+    private int pitSquareCount;
+    private final int[] wumpusSquares;
+    private int wumpusSquareCount;
+    private final int[] goldSquares;
+    private int goldSquareCount;
+    private int pitsLeft;
+    private long deadline;
+
+    /**
+     * Creates a new planner.
+     *
+     * @param size Size of the world
+     * @param pits Number of pits in the world, or FrontierInference.UNKNOWN_PITS to sample worlds with the expected number
+     * @param rollouts Maximum number of rollouts per decision
+     * @param depth Number of frontier squares visited in a rollout
+     * @param timeBudgetNanos Maximum rollout time per decision in nanoseconds
+     * @param rnd Random generator, used to seed the workers
+     */
+    public RolloutPlanner(int size, int pits, int rollouts, int depth, long timeBudgetNanos, Random rnd)
+    {
+        g = BoardGeometry.of(size);
+        cells = g.getCells();
+        if (pits == FrontierInference.UNKNOWN_PITS)
+        {
+            pits = Math.round((float)FrontierInference.PIT_PRIOR * (cells - 1));
+        }
+        totalPits = pits;
+        this.rollouts = rollouts;
+        this.depth = depth;
+        timeBudget = timeBudgetNanos;
+        pool = ForkJoinPool.commonPool();
+        workers = new Worker[Math.max(1, pool.getParallelism())];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Worker(size, new Random(rnd.nextLong()));
+        }
+        candidates = new int[MAX_CANDIDATES];
+        fixedPits = new BitBoard(size);
+        pitSquares = new int[cells];
+        wumpusSquares = new int[cells];
+        goldSquares = new int[cells];
+    }
+
+    /**
+     * Returns the number of rollouts since the planner was created.
+     *
+     * @return Number of rollouts
+     */
+    public long getTotalRollouts()
+    {
+        return totalRollouts;
+    }
+
+    /**
+     * Chooses the frontier square to go to next.
+     *
+     * @param w The real world. Only what the agent has seen is used.
+     * @param facts Knowledge base of the agent
+     * @param frontier Frontier squares
+     * @param danger Probability of a pit or the Wumpus, indexed by cell
+     * @param timed True if the decision has a deadline
+     * @param deadlineNanos Deadline of the decision as a System.nanoTime() value
+     * @return Cell index of the chosen square, or -1 if the danger should decide
+     */
+    public int choose(World w, KnowledgeBase facts, BitBoard frontier, double[] danger, boolean timed, long deadlineNanos)
+    {
+        //Candidates in order of increasing danger
+        candidateCount = 0;
+        for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+        {
+            if (facts.classify(f) == KnowledgeBase.DANGEROUS) continue;
+            int i = Math.min(candidateCount, MAX_CANDIDATES - 1);
+            if (i == MAX_CANDIDATES - 1 && candidateCount == MAX_CANDIDATES && danger[f] >= danger[candidates[i]]) continue;
+            while (i > 0 && danger[candidates[i - 1]] > danger[f])
+            {
+                candidates[i] = candidates[i - 1];
+                i--;
+            }
+            candidates[i] = f;
+            if (candidateCount < MAX_CANDIDATES) candidateCount++;
+        }
+        if (candidateCount < 2) return -1;
+
+        world = w;
+        kb = facts;
+        BitBoard visited = facts.getVisited();
+        fixedPits.copyFrom(facts.getPits());
+        fixedPits.and(visited);
+        pitsLeft = totalPits - fixedPits.cardinality();
+        pitSquareCount = 0;
+        wumpusSquareCount = 0;
+        goldSquareCount = 0;
+        for (int c = 0; c < cells; c++)
+        {
+            if (visited.get(c)) continue;
+            if (!facts.getNoPits().get(c)) pitSquares[pitSquareCount++] = c;
+            if (facts.getWumpusCandidates().get(c)) wumpusSquares[wumpusSquareCount++] = c;
+            goldSquares[goldSquareCount++] = c;
+        }
+        if (pitsLeft < 0 || pitSquareCount < pitsLeft || goldSquareCount == 0) return -1;
+
+        deadline = System.nanoTime() + timeBudget;
+        if (timed && deadlineNanos - deadline < 0) deadline = deadlineNanos;
+
+        pool.invoke(new RolloutTask(0, workers.length));
+
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < candidateCount; i++)
+        {
+            double sum = 0;
+            int count = 0;
+            for (Worker wk : workers)
+            {
+                sum += wk.sum[i];
+                count += wk.count[i];
+            }
+            totalRollouts += count;
+            if (count > 0 && sum / count > bestValue)
+            {
+                best = candidates[i];
+                bestValue = sum / count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Runs the rollouts of a range of workers.
+     */
+    private final class RolloutTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int from;
+        final int to;
+
+        RolloutTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                workers[from].run(from, workers.length);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RolloutTask(from, mid), new RolloutTask(mid, to));
+        }
+    }
+
+    /**
+     * Rollout state of one worker.
+     */
+    private final class Worker
+    {
+        final Random rnd;
+        final KnowledgeBase facts;
+        final RoutePlanner planner;
+        final int[] route;
+        World sim;
+
+        final BitBoard pitLayer;
+        final BitBoard wumpusLayer;
+        final BitBoard goldLayer;
+        final BitBoard known;
+        final BitBoard frontier;
+        final BitBoard safe;
+        final double[] pitEstimate;
+        final double[] wumpusEstimate;
+
+        //Chain state: pit squares, position of each square in the list
+        //(-1 if no pit) and number of pits next to each square
+        final int[] pits;
+        final int[] pos;
+        final int[] cover;
+        int k;
+
+        //Results per candidate
+        final double[] sum = new double[MAX_CANDIDATES];
+        final int[] count = new int[MAX_CANDIDATES];
+
+        Worker(int size, Random rnd)
+        {
+            this.rnd = rnd;
+            facts = new KnowledgeBase(size, totalPits, false, false);
+            planner = new RoutePlanner(size);
+            route = new int[cells * 4];
+            pitLayer = new BitBoard(size);
+            wumpusLayer = new BitBoard(size);
+            goldLayer = new BitBoard(size);
+            known = new BitBoard(size);
+            frontier = new BitBoard(size);
+            safe = new BitBoard(size);
+            pitEstimate = new double[cells];
+            wumpusEstimate = new double[cells];
+            pits = new int[cells];
+            pos = new int[cells];
+            cover = new int[cells];
+        }
+
+        /**
+         * Runs the rollouts of this worker, every step-th rollout
+         * starting at first.
+         */
+        void run(int first, int step)
+        {
+            for (int i = 0; i < candidateCount; i++)
+            {
+                sum[i] = 0;
+                count[i] = 0;
+            }
+            if (sim == null) sim = world.cloneWorld();
+            if (!startChain()) return;
+
+            int mix = MIX_STEPS * pitSquareCount;
+            for (int r = first; r < rollouts && System.nanoTime() - deadline < 0; r += step)
+            {
+                for (int s = 0; s < mix; s++)
+                {
+                    step();
+                }
+                int c = r % candidateCount;
+                sum[c] += rollout(candidates[c]);
+                count[c]++;
+            }
+        }
+
+        /**
+         * Simulates a game in a sampled world, starting with a walk to
+         * a candidate square.
+         *
+         * @return Change in score
+         */
+        int rollout(int target)
+        {
+            pitLayer.copyFrom(fixedPits);
+            for (int i = 0; i < k; i++)
+            {
+                pitLayer.set(pits[i]);
+            }
+            wumpusLayer.clear();
+            if (wumpusSquareCount > 0) wumpusLayer.set(wumpusSquares[rnd.nextInt(wumpusSquareCount)]);
+            goldLayer.clear();
+            goldLayer.set(goldSquares[rnd.nextInt(goldSquareCount)]);
+
+            sim.copyFrom(world);
+            sim.setHiddenLayers(pitLayer, wumpusLayer, goldLayer);
+            facts.copyFrom(kb);
+            int start = sim.getScore();
+
+            for (int d = 0; d < depth && target >= 0; d++)
+            {
+                sim.getVisitedMask(known);
+                int from = g.index(sim.getPlayerX(), sim.getPlayerY());
+                int n = planner.plan(known, facts.getPits(), from, sim.getDirection(), target, -1, route);
+                if (n < 0) break;
+                for (int i = 0; i < n; i++)
+                {
+                    int result = sim.doAction(route[i]);
+                    if (route[i] == World.OP_MOVE && result != World.RES_MOVED) break;
+                }
+                if (sim.gameOver()) break;
+
+                int x = sim.getPlayerX();
+                int y = sim.getPlayerY();
+                facts.visit(g.index(x, y), sim.hasBreeze(x, y), sim.hasStench(x, y), sim.hasPit(x, y));
+                if (sim.hasGlitter(x, y))
+                {
+                    sim.doAction(World.OP_GRAB);
+                    break;
+                }
+                if (sim.isInPit()) sim.doAction(World.OP_CLIMB);
+                target = next();
+            }
+            return sim.getScore() - start;
+        }
+
+        /**
+         * Chooses the next frontier square of a rollout.
+         *
+         * @return Cell index, or -1 if there is no frontier
+         */
+        int next()
+        {
+            sim.getVisitedMask(known);
+            frontier.clear();
+            frontier.addNeighbors(known);
+            frontier.andNot(known);
+            if (frontier.isEmpty()) return -1;
+
+            facts.getSafe(frontier, safe);
+            if (!safe.isEmpty())
+            {
+                int i = rnd.nextInt(safe.cardinality());
+                int c = safe.nextSetBit(0);
+                while (i-- > 0)
+                {
+                    c = safe.nextSetBit(c + 1);
+                }
+                return c;
+            }
+            facts.estimate(frontier, pitEstimate, wumpusEstimate);
+            int best = -1;
+            double bestDanger = 2;
+            for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                double d = FrontierInference.danger(pitEstimate[f], wumpusEstimate[f]);
+                if (d < bestDanger)
+                {
+                    best = f;
+                    bestDanger = d;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Finds a placement of the remaining pits that explains every
+         * breeze. Each unexplained breeze gets a pit in the square that
+         * explains most unexplained breezes, and the other pits are
+         * placed at random.
+         *
+         * @return False if there is no such placement
+         */
+        boolean startChain()
+        {
+            for (int c = 0; c < cells; c++)
+            {
+                pos[c] = -1;
+                cover[c] = 0;
+            }
+            k = 0;
+            for (int p = fixedPits.nextSetBit(0); p >= 0; p = fixedPits.nextSetBit(p + 1))
+            {
+                for (int v : g.neighbors(p))
+                {
+                    cover[v]++;
+                }
+            }
+
+            BitBoard breeze = kb.getBreeze();
+            for (int v = breeze.nextSetBit(0); v >= 0; v = breeze.nextSetBit(v + 1))
+            {
+                if (cover[v] > 0) continue;
+                int best = -1;
+                int bestGain = 0;
+                for (int n : g.neighbors(v))
+                {
+                    if (!possiblePit(n) || pos[n] >= 0) continue;
+                    int gain = 0;
+                    for (int u : g.neighbors(n))
+                    {
+                        if (breeze.get(u) && cover[u] == 0) gain++;
+                    }
+                    if (gain > bestGain)
+                    {
+                        best = n;
+                        bestGain = gain;
+                    }
+                }
+                if (best < 0 || k == pitsLeft) return false;
+                add(best);
+            }
+            while (k < pitsLeft)
+            {
+                int c = pitSquares[rnd.nextInt(pitSquareCount)];
+                if (pos[c] < 0) add(c);
+            }
+            return true;
+        }
+
+        /**
+         * Makes one step of the chain: moves a random pit to a random
+         * square, unless that leaves a breeze unexplained.
+         */
+        void step()
+        {
+            if (k == 0 || k == pitSquareCount) return;
+            int to = pitSquares[rnd.nextInt(pitSquareCount)];
+            if (pos[to] >= 0) return;
+            int from = pits[rnd.nextInt(k)];
+            add(to);
+            if (removable(from)) remove(from);
+            else remove(to);
+        }
+
+        boolean possiblePit(int c)
+        {
+            return !kb.getVisited().get(c) && !kb.getNoPits().get(c);
+        }
+
+        /**
+         * Checks if the pit in a square can be removed without leaving
+         * a breeze unexplained.
+         */
+        boolean removable(int c)
+        {
+            BitBoard breeze = kb.getBreeze();
+            for (int v : g.neighbors(c))
+            {
+                if (breeze.get(v) && cover[v] < 2) return false;
+            }
+            return true;
+        }
+
+        void add(int c)
+        {
+            for (int v : g.neighbors(c))
+            {
+                cover[v]++;
+            }
+            pos[c] = k;
+            pits[k++] = c;
+        }
+
+        void remove(int c)
+        {
+            for (int v : g.neighbors(c))
+            {
+                cover[v]--;
+            }
+            int p = pos[c];
+            int last = pits[--k];
+            pits[p] = last;
+            pos[last] = p;
+            pos[c] = -1;
+        }
+    }
+}
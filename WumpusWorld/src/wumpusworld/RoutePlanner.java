@@ -0,0 +1,301 @@
+package wumpusworld;
+
+import java.util.Arrays;
+
+/**
+ * A* search over (square, direction) states for the cheapest sequence of
+ * move and turn actions from the player position to a goal square.
+ *
+ * The costs match the score in World.doAction: every move or turn costs
+ * 1, and moving into a known pit also costs the 1000 score for falling
+ * in and the climb action to get out. Routes go through known squares,
+ * except the goal square that can be unknown.
+ *
+ * The heuristic is the Manhattan distance to the goal plus the smallest
+ * number of turns needed to face every direction the route must take.
+ * Since each move changes one coordinate by one and a turn changes the
+ * direction by 90 degrees, it never overestimates the cost. The heuristic
+ * values for all states and goals are precomputed once per world size
+ * and shared by all planners.
+ */
+public class RoutePlanner
+{
+    /**
+     * Cost of a move action.
+     */
+    public static final int MOVE_COST = 1;
+
+    /**
+     * Cost of a turn action.
+     */
+    public static final int TURN_COST = 1;
+
+    /**
+     * Cost of moving into a known pit: the move, falling in and climbing out.
+     */
+    public static final int PIT_COST = MOVE_COST + 1000 + 1;
+
+    private static volatile short[][] heuristics = new short[0][];
+
+    private final BoardGeometry g;
+    private final int cells;
+    private final short[] h;
+    //Cell index of the neighbor in each direction, or -1
+    private final int[] step;
+
+    //Search state, reset by generation stamps instead of clearing
+    private final int[] cost;
+    private final int[] parent;
+    private final int[] seen;
+    private final boolean[] closed;
+    private int generation;
+    private long[] heap;
+    private int heapSize;
+    private int lastCost;
+
+    /**
+     * Creates a new planner.
+     *
+     * @param size Size of the world
+     */
+    public RoutePlanner(int size)
+    {
+        g = BoardGeometry.of(size);
+        cells = g.getCells();
+        h = heuristic(size);
+        step = new int[cells * 4];
+        for (int c = 0; c < cells; c++)
+        {
+            int x = g.x(c);
+            int y = g.y(c);
+            step[c * 4 + World.DIR_UP] = y < size ? c + size : -1;
+            step[c * 4 + World.DIR_RIGHT] = x < size ? c + 1 : -1;
+            step[c * 4 + World.DIR_DOWN] = y > 1 ? c - size : -1;
+            step[c * 4 + World.DIR_LEFT] = x > 1 ? c - 1 : -1;
+        }
+        cost = new int[cells * 4];
+        parent = new int[cells * 4];
+        seen = new int[cells * 4];
+        closed = new boolean[cells * 4];
+        heap = new long[64];
+    }
+
+    /**
+     * Finds the cheapest action sequence to a goal square.
+     *
+     * @param known Squares the route can go through
+     * @param pits Known squares with a pit
+     * @param from Cell index of the player
+     * @param dir Direction the player is facing
+     * @param goal Cell index of the goal square
+     * @param goalDir Direction the player must face in the goal square, or -1 for any direction
+     * @param actions Output, the World.OP_* actions of the route
+     * @return Number of actions, or -1 if the goal can not be reached
+     */
+    public int plan(BitBoard known, BitBoard pits, int from, int dir, int goal, int goalDir, int[] actions)
+    {
+        generation++;
+        heapSize = 0;
+        int start = from * 4 + dir;
+        open(start, 0, -1, goal);
+
+        int found = -1;
+        while (heapSize > 0)
+        {
+            int s = poll();
+            if (closed[s]) continue;
+            closed[s] = true;
+            int c = s >> 2;
+            int d = s & 3;
+            if (c == goal && (goalDir < 0 || d == goalDir))
+            {
+                found = s;
+                break;
+            }
+
+            int base = cost[s];
+            open(c * 4 + ((d + 1) & 3), base + TURN_COST, s, goal);
+            open(c * 4 + ((d + 3) & 3), base + TURN_COST, s, goal);
+            //Moves out of an unknown goal are not allowed
+            int n = step[s];
+            if (n >= 0 && (c != goal || known.get(c)) && (n == goal || known.get(n)))
+            {
+                open(n * 4 + d, base + (pits.get(n) ? PIT_COST : MOVE_COST), s, goal);
+            }
+        }
+        if (found < 0)
+        {
+            lastCost = -1;
+            return -1;
+        }
+        lastCost = cost[found];
+
+        //Actions in reverse order
+        int len = 0;
+        for (int s = found; parent[s] >= 0; s = parent[s])
+        {
+            int p = parent[s];
+            if ((p >> 2) != (s >> 2)) actions[len++] = World.OP_MOVE;
+            else if ((s & 3) == ((p + 1) & 3)) actions[len++] = World.OP_TURN_RIGHT;
+            else actions[len++] = World.OP_TURN_LEFT;
+        }
+        for (int i = 0, j = len - 1; i < j; i++, j--)
+        {
+            int t = actions[i];
+            actions[i] = actions[j];
+            actions[j] = t;
+        }
+        return len;
+    }
+
+    /**
+     * Returns the cost of the last planned route.
+     *
+     * @return Cost, or -1 if no route was found
+     */
+    public int getLastCost()
+    {
+        return lastCost;
+    }
+
+    /**
+     * Returns a lower bound for the cost from a state to a goal square.
+     *
+     * @param cell Cell index
+     * @param dir Direction
+     * @param goal Cell index of the goal square
+     * @return Lower bound
+     */
+    public int estimate(int cell, int dir, int goal)
+    {
+        return h[(cell * 4 + dir) * cells + goal];
+    }
+
+    /**
+     * Adds a state to the open list if the cost is lower than before.
+     */
+    private void open(int s, int c, int from, int goal)
+    {
+        if (seen[s] != generation)
+        {
+            seen[s] = generation;
+            closed[s] = false;
+        }
+        else if (c >= cost[s])
+        {
+            return;
+        }
+        cost[s] = c;
+        parent[s] = from;
+
+        long f = c + h[s * cells + goal];
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        long e = f << 32 | s;
+        while (i > 0)
+        {
+            int p = (i - 1) >> 1;
+            if (heap[p] <= e) break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = e;
+    }
+
+    /**
+     * Removes the state with the lowest estimated total cost from
+     * the open list.
+     */
+    private int poll()
+    {
+        long top = heap[0];
+        long e = heap[--heapSize];
+        int i = 0;
+        while (true)
+        {
+            int l = 2 * i + 1;
+            if (l >= heapSize) break;
+            int r = l + 1;
+            int m = r < heapSize && heap[r] < heap[l] ? r : l;
+            if (heap[m] >= e) break;
+            heap[i] = heap[m];
+            i = m;
+        }
+        heap[i] = e;
+        return (int)top;
+    }
+
+    /**
+     * Returns the shared heuristic table for a world size.
+     *
+     * @param size Size of the world
+     * @return Heuristic values indexed by (cell*4+dir)*cells+goal
+     */
+    private static short[] heuristic(int size)
+    {
+        short[][] t = heuristics;
+        if (size < t.length && t[size] != null)
+        {
+            return t[size];
+        }
+        return createHeuristic(size);
+    }
+
+    /**
+     * Calculates and caches the heuristic table for a world size.
+     *
+     * @param size Size of the world
+     * @return Heuristic values
+     */
+    private static synchronized short[] createHeuristic(int size)
+    {
+        short[][] t = heuristics;
+        if (size < t.length && t[size] != null)
+        {
+            return t[size];
+        }
+        BoardGeometry g = BoardGeometry.of(size);
+        int n = g.getCells();
+        short[] table = new short[n * 4 * n];
+        for (int c = 0; c < n; c++)
+        {
+            for (int d = 0; d < 4; d++)
+            {
+                for (int goal = 0; goal < n; goal++)
+                {
+                    int dx = g.x(goal) - g.x(c);
+                    int dy = g.y(goal) - g.y(c);
+                    int turns = turns(d, dx == 0 ? -1 : dx > 0 ? World.DIR_RIGHT : World.DIR_LEFT,
+                            dy == 0 ? -1 : dy > 0 ? World.DIR_UP : World.DIR_DOWN);
+                    table[(c * 4 + d) * n + goal] = (short)((Math.abs(dx) + Math.abs(dy)) * MOVE_COST + turns * TURN_COST);
+                }
+            }
+        }
+        short[][] u = new short[Math.max(t.length, size + 1)][];
+        System.arraycopy(t, 0, u, 0, t.length);
+        u[size] = table;
+        heuristics = u;
+        return table;
+    }
+
+    /**
+     * Returns the smallest number of turns needed to face two directions,
+     * starting in a given direction.
+     *
+     * @param dir Start direction
+     * @param a First direction, or -1 if not needed
+     * @param b Second direction, or -1 if not needed
+     * @return Number of turns
+     */
+    private static int turns(int dir, int a, int b)
+    {
+        if (a < 0 && b < 0) return 0;
+        if (a < 0 || b < 0)
+        {
+            int diff = Math.abs(dir - Math.max(a, b));
+            return diff == 3 ? 1 : diff;
+        }
+        //Two perpendicular directions
+        return dir == a || dir == b ? 1 : 2;
+    }
+}
@@ -0,0 +1,287 @@
+package wumpusworld;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Statistics over the results of any number of games in constant memory.
+ *
+ * The mean and variance of the score are updated with Welford's method,
+ * which stays accurate over millions of games. Scores are also counted
+ * in a histogram with one bin per score between MIN_SCORE and MAX_SCORE,
+ * so percentiles in that range are exact. Scores outside the range are
+ * counted in the first or last bin. Agent actions per game get a
+ * histogram of their own.
+ *
+ * An instance is not thread-safe. Each worker thread adds to its own
+ * instance, and the instances are merged when the workers are done, with
+ * the pairwise formula of Chan et al. for the variance.
+ */
+public class ScoreStatistics
+{
+    /**
+     * Lowest score with a bin of its own.
+     */
+    public static final int MIN_SCORE = -10000;
+
+    /**
+     * Highest score with a bin of its own.
+     */
+    public static final int MAX_SCORE = 2000;
+
+    /**
+     * Highest number of actions with a bin of its own.
+     */
+    public static final int MAX_ACTIONS = 1000;
+
+    private long games;
+    private double mean;
+    private double m2;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private long totalActions;
+    private long pitFalls;
+    private long gamesWithPitFall;
+    private final long[] outcomes = new long[GameResult.OUTCOMES];
+    private final long[] scoreBins = new long[MAX_SCORE - MIN_SCORE + 1];
+    private final long[] actionBins = new long[MAX_ACTIONS + 1];
+
+    /**
+     * Adds the result of a game.
+     *
+     * @param r Result of the game
+     */
+    public void add(GameResult r)
+    {
+        int score = r.getScore();
+        games++;
+        double delta = score - mean;
+        mean += delta / games;
+        m2 += delta * (score - mean);
+        if (score < min) min = score;
+        if (score > max) max = score;
+        scoreBins[Math.max(MIN_SCORE, Math.min(MAX_SCORE, score)) - MIN_SCORE]++;
+
+        totalActions += r.getActions();
+        actionBins[Math.min(MAX_ACTIONS, r.getActions())]++;
+        outcomes[r.getOutcome()]++;
+        pitFalls += r.getPitFalls();
+        if (r.getPitFalls() > 0) gamesWithPitFall++;
+    }
+
+    /**
+     * Adds all games of another instance to this one.
+     *
+     * @param o Statistics to add. Not changed.
+     */
+    public void merge(ScoreStatistics o)
+    {
+        if (o.games == 0) return;
+        long n = games + o.games;
+        double delta = o.mean - mean;
+        m2 += o.m2 + delta * delta * ((double)games * o.games / n);
+        mean += delta * o.games / n;
+        games = n;
+        min = Math.min(min, o.min);
+        max = Math.max(max, o.max);
+        totalActions += o.totalActions;
+        pitFalls += o.pitFalls;
+        gamesWithPitFall += o.gamesWithPitFall;
+        for (int i = 0; i < outcomes.length; i++)
+        {
+            outcomes[i] += o.outcomes[i];
+        }
+        for (int i = 0; i < scoreBins.length; i++)
+        {
+            scoreBins[i] += o.scoreBins[i];
+        }
+        for (int i = 0; i < actionBins.length; i++)
+        {
+            actionBins[i] += o.actionBins[i];
+        }
+    }
+
+    /**
+     * Removes all games.
+     */
+    public void clear()
+    {
+        games = 0;
+        mean = 0;
+        m2 = 0;
+        min = Integer.MAX_VALUE;
+        max = Integer.MIN_VALUE;
+        totalActions = 0;
+        pitFalls = 0;
+        gamesWithPitFall = 0;
+        Arrays.fill(outcomes, 0);
+        Arrays.fill(scoreBins, 0);
+        Arrays.fill(actionBins, 0);
+    }
+
+    /**
+     * Returns the number of games.
+     *
+     * @return Number of games
+     */
+    public long getGames()
+    {
+        return games;
+    }
+
+    /**
+     * Returns the mean score.
+     *
+     * @return Mean score, or NaN if there are no games
+     */
+    public double getMean()
+    {
+        return games > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the sample variance of the score.
+     *
+     * @return Variance, or NaN if there are less than two games
+     */
+    public double getVariance()
+    {
+        return games > 1 ? m2 / (games - 1) : Double.NaN;
+    }
+
+    /**
+     * Returns the sample standard deviation of the score.
+     *
+     * @return Standard deviation, or NaN if there are less than two games
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the lowest score.
+     *
+     * @return Lowest score, or Integer.MAX_VALUE if there are no games
+     */
+    public int getMin()
+    {
+        return min;
+    }
+
+    /**
+     * Returns the highest score.
+     *
+     * @return Highest score, or Integer.MIN_VALUE if there are no games
+     */
+    public int getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns a percentile of the score: the lowest score such that at
+     * least p percent of the games have that score or lower.
+     *
+     * @param p Percentile, between 0 and 100
+     * @return The score, or 0 if there are no games. Exact if between MIN_SCORE and MAX_SCORE.
+     */
+    public int getScorePercentile(double p)
+    {
+        int bin = percentileBin(scoreBins, p);
+        if (bin < 0) return 0;
+        return Math.max(min, Math.min(max, bin + MIN_SCORE));
+    }
+
+    /**
+     * Returns a percentile of the number of agent actions per game.
+     *
+     * @param p Percentile, between 0 and 100
+     * @return Number of actions, or 0 if there are no games. MAX_ACTIONS for longer games.
+     */
+    public int getActionPercentile(double p)
+    {
+        return Math.max(0, percentileBin(actionBins, p));
+    }
+
+    /**
+     * Returns the mean number of agent actions per game.
+     *
+     * @return Mean number of actions, or NaN if there are no games
+     */
+    public double getMeanActions()
+    {
+        return (double)totalActions / (double)games;
+    }
+
+    /**
+     * Returns the share of games with an outcome.
+     *
+     * @param outcome GameResult outcome constant
+     * @return Share between 0 and 1, or NaN if there are no games
+     */
+    public double getRate(int outcome)
+    {
+        return (double)outcomes[outcome] / (double)games;
+    }
+
+    /**
+     * Returns the share of games where the agent fell into a pit at
+     * least once.
+     *
+     * @return Share between 0 and 1, or NaN if there are no games
+     */
+    public double getPitFallRate()
+    {
+        return (double)gamesWithPitFall / (double)games;
+    }
+
+    /**
+     * Returns the number of times an agent fell into a pit.
+     *
+     * @return Number of pit falls in all games
+     */
+    public long getPitFalls()
+    {
+        return pitFalls;
+    }
+
+    /**
+     * Prints a summary of the statistics.
+     *
+     * @param out Stream to print to
+     */
+    public void print(PrintStream out)
+    {
+        if (games == 0) return;
+        out.printf("Score: mean %.2f, std dev %.2f, min %d, max %d, p50 %d, p95 %d, p99 %d%n",
+                getMean(), getStandardDeviation(), min, max,
+                getScorePercentile(50), getScorePercentile(95), getScorePercentile(99));
+        out.printf("Games: %d, won %.2f%%, eaten %.2f%%, stuck %.2f%%, timed out %.2f%%, fell into a pit %.2f%% (%d falls)%n",
+                games, 100 * getRate(GameResult.WON), 100 * getRate(GameResult.EATEN),
+                100 * getRate(GameResult.STUCK), 100 * getRate(GameResult.TIMEOUT),
+                100 * getPitFallRate(), pitFalls);
+        out.printf("Actions per game: mean %.2f, p50 %d, p95 %d, p99 %d%n",
+                getMeanActions(), getActionPercentile(50), getActionPercentile(95), getActionPercentile(99));
+    }
+
+    /**
+     * Finds the bin of a percentile in a histogram.
+     *
+     * @param bins Histogram
+     * @param p Percentile, between 0 and 100
+     * @return Index of the bin, or -1 if there are no games
+     */
+    private int percentileBin(long[] bins, double p)
+    {
+        if (games == 0) return -1;
+        long rank = Math.max(1, (long)Math.ceil(p / 100 * games));
+        long count = 0;
+        for (int i = 0; i < bins.length; i++)
+        {
+            count += bins[i];
+            if (count >= rank) return i;
+        }
+        return bins.length - 1;
+    }
+}
@@ -0,0 +1,227 @@
+package wumpusworld;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the solver agent on a sequence of maps, one game per map, on a
+ * number of worker threads.
+ *
+ * Every game has its own World and agent, so games can run in any order.
+ * The runner keeps a window of a few games per thread in flight and takes
+ * the results in map order: the output of each game is printed in map
+ * order, and the scores are added in map order, so the average is the
+ * same as when the games are run one after the other. This only holds if
+ * the decisions of the agents do not depend on time: with a decision
+ * time limit (AgentOptions.setDecisionTimeMillis), an agent on a loaded
+ * machine can run out of time and use estimated probabilities where a
+ * sequential run would not. The sim and simdb modes therefore run
+ * without limit unless DecisionTimeMillis is set. Maps are read from
+ * the iterator only as the window moves, so the number of maps is not
+ * limited by memory.
+ *
+ * The games are played by a GameController, which stops games that do
+ * not end. The results are also added to the statistics of the runner.
+ * If the runner has a ResultSink, the results go to the sink instead of
+ * the console, and the console only gets a progress line at a fixed
+ * interval.
+ *
+ * With one thread, the games run on the calling thread.
+ */
+public class SimulationRunner
+{
+    //Games in flight per thread
+    private static final int WINDOW_PER_THREAD = 4;
+
+    //Time between progress lines when results go to a sink
+    private static final long PROGRESS_NANOS = 10000000000L;
+
+    private final int threads;
+    private final GameController controller;
+    private final ScoreStatistics statistics = new ScoreStatistics();
+    private ResultSink sink;
+    private long games;
+    private long lastProgress;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param threads Number of worker threads
+     * @param controller Plays the games
+     */
+    public SimulationRunner(int threads, GameController controller)
+    {
+        this.threads = Math.max(1, threads);
+        this.controller = controller;
+    }
+
+    /**
+     * Creates a runner with the thread count from config.txt, by default
+     * one thread per available processor, and the game limits from
+     * config.txt.
+     *
+     * @return New runner
+     */
+    public static SimulationRunner fromConfig()
+    {
+        return new SimulationRunner(Config.getInt("Threads", Runtime.getRuntime().availableProcessors()),
+                GameController.fromConfig());
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return Number of threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Returns the statistics of the games played by this runner.
+     *
+     * @return Statistics
+     */
+    public ScoreStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Sets where the result of each game goes.
+     *
+     * @param sink Sink for the results, or null to print them
+     */
+    public void setSink(ResultSink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Plays one game on each map and prints the result of each game in
+     * map order.
+     *
+     * @param maps Maps to play
+     * @return Average score, or NaN if there were no maps
+     */
+    public double run(Iterator<? extends MapView> maps)
+    {
+        double totScore = 0;
+        long first = games;
+        lastProgress = System.nanoTime();
+        if (threads == 1)
+        {
+            while (maps.hasNext())
+            {
+                MapView map = maps.next();
+                totScore += (double)report(map, controller.play(map.generateWorld())).getScore();
+            }
+            return totScore / (double)(games - first);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            ArrayDeque<Game> window = new ArrayDeque<Game>();
+            while (maps.hasNext() || !window.isEmpty())
+            {
+                while (maps.hasNext() && window.size() < threads * WINDOW_PER_THREAD)
+                {
+                    Game g = new Game(maps.next());
+                    g.future = pool.submit(g);
+                    window.add(g);
+                }
+                Game g = window.poll();
+                totScore += (double)report(g.map, take(g.future)).getScore();
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return totScore / (double)(games - first);
+    }
+
+    /**
+     * Adds the result of a game to the statistics, and prints it or
+     * sends it to the sink.
+     *
+     * @param map The map of the game
+     * @param r Result of the game
+     * @return r
+     */
+    private GameResult report(MapView map, GameResult r)
+    {
+        statistics.add(r);
+        if (sink != null)
+        {
+            sink.add(games++, map, r);
+            long now = System.nanoTime();
+            if (now - lastProgress >= PROGRESS_NANOS)
+            {
+                lastProgress = now;
+                System.out.println(games + " games, average score " + statistics.getMean());
+            }
+            return r;
+        }
+        games++;
+        String stopped = "";
+        if (r.getOutcome() == GameResult.STUCK) stopped = " (stuck)";
+        if (r.getOutcome() == GameResult.TIMEOUT) stopped = " (timed out)";
+        System.out.println("Simulation ended after " + r.getActions() + " actions. Score " + r.getScore() + stopped);
+        return r;
+    }
+
+    /**
+     * Waits for a game to finish. An exception thrown by the game is
+     * thrown again on the calling thread.
+     *
+     * @param f The game
+     * @return Result of the game
+     */
+    private static GameResult take(Future<GameResult> f)
+    {
+        try
+        {
+            return f.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a game", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * A game on one map, run by a worker thread.
+     */
+    private final class Game implements Callable<GameResult>
+    {
+        private final MapView map;
+        private Future<GameResult> future;
+
+        Game(MapView map)
+        {
+            this.map = map;
+        }
+
+        @Override
+        public GameResult call()
+        {
+            return controller.play(map.generateWorld());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package wumpusworld;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs long campaigns of games, one task per game, each with its own
+ * World and agent.
+ *
+ * On a Java runtime with virtual threads, each game runs on a virtual
+ * thread of its own. On older runtimes the tasks run on a pool of platform
+ * threads that are reused. Either way, a semaphore keeps the number of
+ * games in progress at the concurrency level, by default the number of
+ * processors, so maps are only read and worlds only created as games
+ * finish.
+ *
+ * Results are added to LongAdder counters, so finishing games never wait
+ * for each other. The full statistics of each game go to one of a few
+ * ScoreStatistics instances, taken from and put back on a lock-free
+ * queue, so there are never more instances than games in progress. They
+ * are merged when the campaign is over. With a ResultSink, each game also
+ * adds its result to the sink from the thread that played it.
+ *
+ * While games run, the thread that started the campaign reports progress
+ * at a fixed interval. A campaign can be cancelled from any thread: no
+ * new games are started, and the games in progress are allowed to finish.
+ *
+ * A game where the agent throws an exception is counted as failed and
+ * the campaign goes on. The game number, the seed of the map and the
+ * stack trace of the first failures are printed.
+ */
+public class Tournament
+{
+    //Number of failed games that are printed
+    private static final int PRINTED_FAILURES = 10;
+
+    /**
+     * Receives progress reports of a running campaign.
+     */
+    public interface Progress
+    {
+        /**
+         * Called with the results so far, on the thread that runs the
+         * campaign.
+         *
+         * @param t The tournament
+         */
+        public void report(Tournament t);
+    }
+
+    private final int concurrency;
+    private final GameController controller;
+    private Progress progress;
+    private long progressMillis = 10000;
+    private volatile boolean cancelled;
+
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder totalScore = new LongAdder();
+    private final LongAdder totalActions = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger printedFailures = new AtomicInteger();
+    private ResultSink sink;
+    private long games;
+    private final ConcurrentLinkedQueue<ScoreStatistics> statistics = new ConcurrentLinkedQueue<ScoreStatistics>();
+
+    /**
+     * Creates a new tournament.
+     *
+     * @param concurrency Maximum number of games in progress at the same time
+     * @param controller Plays the games
+     */
+    public Tournament(int concurrency, GameController controller)
+    {
+        this.concurrency = Math.max(1, concurrency);
+        this.controller = controller;
+    }
+
+    /**
+     * Creates a tournament with the concurrency from the Threads setting
+     * in config.txt, by default one game per available processor, and
+     * the game limits from config.txt.
+     *
+     * @return New tournament
+     */
+    public static Tournament fromConfig()
+    {
+        return new Tournament(Config.getInt("Threads", Runtime.getRuntime().availableProcessors()),
+                GameController.fromConfig());
+    }
+
+    /**
+     * Sets the receiver of progress reports.
+     *
+     * @param p Receiver, or null for no reports
+     * @param intervalMillis Time between two reports in milliseconds
+     */
+    public void setProgress(Progress p, long intervalMillis)
+    {
+        progress = p;
+        progressMillis = Math.max(1, intervalMillis);
+    }
+
+    /**
+     * Sets where the result of each game goes.
+     *
+     * @param sink Sink for the results, or null for none
+     */
+    public void setSink(ResultSink sink)
+    {
+        this.sink = sink;
+    }
+
+    /**
+     * Plays one game on each map, until the maps run out or the campaign
+     * is cancelled. Returns when all started games have finished.
+     *
+     * @param maps Maps to play
+     * @return Number of finished games
+     */
+    public long run(Iterator<? extends MapView> maps)
+    {
+        final Semaphore slots = new Semaphore(concurrency);
+        ExecutorService executor = newExecutor();
+        long last = System.nanoTime();
+        try
+        {
+            while (!cancelled && maps.hasNext())
+            {
+                while (!slots.tryAcquire(progressMillis, TimeUnit.MILLISECONDS))
+                {
+                    last = report();
+                }
+                if (System.nanoTime() - last >= progressMillis * 1000000L) last = report();
+                if (cancelled)
+                {
+                    slots.release();
+                    break;
+                }
+                final MapView map = maps.next();
+                final long game = games++;
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            if (!cancelled) play(game, map);
+                        }
+                        finally
+                        {
+                            slots.release();
+                        }
+                    }
+                });
+            }
+            //All slots are free when the last game has finished
+            while (!slots.tryAcquire(concurrency, progressMillis, TimeUnit.MILLISECONDS))
+            {
+                report();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        report();
+        return finished.sum();
+    }
+
+    /**
+     * Stops the campaign. Games that have not started are skipped.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the campaign has been cancelled.
+     *
+     * @return True if cancelled
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of finished games.
+     *
+     * @return Number of games
+     */
+    public long getFinished()
+    {
+        return finished.sum();
+    }
+
+    /**
+     * Returns the number of games where the agent threw an exception.
+     * These are not counted as finished.
+     *
+     * @return Number of games
+     */
+    public long getFailed()
+    {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the sum of the scores of the finished games.
+     *
+     * @return Total score
+     */
+    public long getTotalScore()
+    {
+        return totalScore.sum();
+    }
+
+    /**
+     * Returns the average score of the finished games.
+     *
+     * @return Average score, or NaN if no game has finished
+     */
+    public double getAverageScore()
+    {
+        return (double)totalScore.sum() / (double)finished.sum();
+    }
+
+    /**
+     * Returns the average number of agent actions per finished game.
+     *
+     * @return Average number of actions, or NaN if no game has finished
+     */
+    public double getAverageActions()
+    {
+        return (double)totalActions.sum() / (double)finished.sum();
+    }
+
+    /**
+     * Returns the statistics of the finished games. Must not be called
+     * while a campaign is running.
+     *
+     * @return Merged statistics
+     */
+    public ScoreStatistics getStatistics()
+    {
+        ScoreStatistics all = new ScoreStatistics();
+        for (ScoreStatistics s : statistics)
+        {
+            all.merge(s);
+        }
+        return all;
+    }
+
+    /**
+     * Plays a game and adds its result.
+     *
+     * @param game Number of the game
+     * @param map The map
+     */
+    private void play(long game, MapView map)
+    {
+        GameResult r;
+        try
+        {
+            r = controller.play(map.generateWorld());
+        }
+        catch (RuntimeException ex)
+        {
+            failed.increment();
+            if (printedFailures.incrementAndGet() <= PRINTED_FAILURES)
+            {
+                synchronized (System.out)
+                {
+                    System.out.println("Game " + game + " failed, map seed " + map.getSeed());
+                    ex.printStackTrace(System.out);
+                }
+            }
+            return;
+        }
+        if (sink != null) sink.add(game, map, r);
+        ScoreStatistics s = statistics.poll();
+        if (s == null) s = new ScoreStatistics();
+        s.add(r);
+        statistics.offer(s);
+        totalScore.add(r.getScore());
+        totalActions.add(r.getActions());
+        finished.increment();
+    }
+
+    /**
+     * Sends a progress report, if there is a receiver.
+     *
+     * @return Time of the report
+     */
+    private long report()
+    {
+        if (progress != null) progress.report(this);
+        return System.nanoTime();
+    }
+
+    /**
+     * Creates an executor with one virtual thread per task if the Java
+     * runtime has virtual threads, otherwise a pool of platform threads.
+     *
+     * @return New executor
+     */
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)m.invoke(null);
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
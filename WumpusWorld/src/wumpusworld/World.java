@@ -1,18 +1,35 @@
 package wumpusworld;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
  * This class handles an instance of the Wumpus World. It contains the world
  * state, which actions are available, and updates the world when an action
  * has been executed.
  * 
+ * The world state is stored as one bitboard per layer (pits, Wumpus, gold,
+ * breeze, stench and visited squares). Breeze and stench are derived from
+ * the pit and Wumpus layers by shifting the masks one square in each
+ * direction.
+ * 
+ * Search agents can explore action sequences in place: mark() starts a
+ * log of the actions, and undoTo() takes them back. Each action logs the
+ * player state before it as one packed value and the single square it
+ * changed, if any, so neither doAction nor undoTo allocates once the log
+ * has grown. A snapshot copies the state that actions change into a
+ * reusable object, for when a state is returned to many times.
+ * 
  * @author Johan Hagelbäck
  */
 public class World 
 {
     private int size;
-    private String[][] w;
+    private BitBoard pits;
+    private BitBoard wumpus;
+    private BitBoard gold;
+    private BitBoard breeze;
+    private BitBoard stench;
+    private BitBoard visited;
     private int pX = 1;
     private int pY = 1;
     private boolean wumpusAlive = true;
@@ -31,6 +48,18 @@ public class World
     //Start direction
     private int dir = DIR_RIGHT;
     
+    //Action log: packed player state before each action, and the square
+    //the action changed as cell << 2 | CHANGE_*
+    private boolean logging = false;
+    private long[] logState = new long[0];
+    private int[] logChange = new int[0];
+    private int logSize = 0;
+    
+    private static final int CHANGE_NONE = 0;
+    private static final int CHANGE_VISITED = 1;
+    private static final int CHANGE_GOLD = 2;
+    private static final int CHANGE_WUMPUS = 3;
+    
     //Percepts constants.
     public static final String BREEZE = "B";
     public static final String STENCH = "S";
@@ -48,6 +77,26 @@ public class World
     public static final String A_TURN_LEFT = "l";
     public static final String A_TURN_RIGHT = "r";
     
+    //Action opcodes, used by the allocation-free doAction(int).
+    public static final int OP_MOVE = 0;
+    public static final int OP_GRAB = 1;
+    public static final int OP_CLIMB = 2;
+    public static final int OP_SHOOT = 3;
+    public static final int OP_TURN_LEFT = 4;
+    public static final int OP_TURN_RIGHT = 5;
+    
+    //Action result constants, returned by doAction(int).
+    public static final int RES_FAILED = 0;
+    public static final int RES_MOVED = 1;
+    public static final int RES_BUMPED = 2;
+    public static final int RES_FELL_IN_PIT = 3;
+    public static final int RES_EATEN = 4;
+    public static final int RES_TURNED = 5;
+    public static final int RES_GRABBED_GOLD = 6;
+    public static final int RES_KILLED_WUMPUS = 7;
+    public static final int RES_MISSED = 8;
+    public static final int RES_CLIMBED = 9;
+    
     /**
      * Creates a new Wumpus World. The Wumpus World works with
      * any size 4 or larger, but only size 4 is supported by
@@ -58,27 +107,84 @@ public class World
     public World(int size)
     {
         this.size = size;
-        w = new String[size+1][size+1];
-        
-        for (int x = 0; x <= size; x++)
-        {
-            for (int y = 0; y <= size; y++)
-            {
-                w[x][y] = UNKNOWN;
-            }
-        }
+        createLayers();
         
         setVisited(1, 1);
     }
 
+    /**
+     * Creates a Wumpus World from a grid of square strings, where each
+     * string contains the percept constants for that square. The grid
+     * is indexed [x][y] with positions starting at 1.
+     * 
+     * @param w1 Square strings
+     * @param size Size of the world
+     * @param px Player X position
+     * @param py Player Y position
+     * @param dirr Player direction
+     */
     public World(String[][] w1,int size, int px, int py, int dirr)
     {
         this.size = size;
         pX=px;
         pY=py;
         dir = dirr;
-        this.w=w1;
+        createLayers();
+        
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                String s = w1[x][y];
+                if (!s.contains(UNKNOWN)) visited.set(x, y);
+                if (s.contains(PIT)) pits.set(x, y);
+                if (s.contains(WUMPUS)) wumpus.set(x, y);
+                if (s.contains(GLITTER)) gold.set(x, y);
+                if (s.contains(BREEZE)) breeze.set(x, y);
+                if (s.contains(STENCH)) stench.set(x, y);
+            }
+        }
+    }
+    
+    /**
+     * Creates a copy of another Wumpus World, including the
+     * player state.
+     * 
+     * @param o World to copy
+     */
+    private World(World o)
+    {
+        size = o.size;
+        pits = new BitBoard(o.pits);
+        wumpus = new BitBoard(o.wumpus);
+        gold = new BitBoard(o.gold);
+        breeze = new BitBoard(o.breeze);
+        stench = new BitBoard(o.stench);
+        visited = new BitBoard(o.visited);
+        pX = o.pX;
+        pY = o.pY;
+        dir = o.dir;
+        wumpusAlive = o.wumpusAlive;
+        hasArrow = o.hasArrow;
+        isInPit = o.isInPit;
+        hasGold = o.hasGold;
+        gameOver = o.gameOver;
+        score = o.score;
+    }
+    
+    /**
+     * Creates empty bitboards for all layers.
+     */
+    private void createLayers()
+    {
+        pits = new BitBoard(size);
+        wumpus = new BitBoard(size);
+        gold = new BitBoard(size);
+        breeze = new BitBoard(size);
+        stench = new BitBoard(size);
+        visited = new BitBoard(size);
     }
+    
     /**
      * Returns the current score.
      * 
@@ -194,10 +300,7 @@ public class World
         if (!isValidPosition(x,y)) return false;
         if (isUnknown(x,y)) return false;
         
-        if (w[x][y].contains(BREEZE))
-            return true;
-        else
-            return false;
+        return breeze.get(x, y);
     }
     
     /**
@@ -214,10 +317,7 @@ public class World
         if (!isValidPosition(x,y)) return false;
         if (isUnknown(x,y)) return false;
         
-        if (w[x][y].contains(STENCH))
-            return true;
-        else
-            return false;
+        return stench.get(x, y);
     }
     
     /**
@@ -234,10 +334,7 @@ public class World
         if (!isValidPosition(x,y)) return false;
         if (isUnknown(x,y)) return false;
         
-        if (w[x][y].contains(GLITTER))
-            return true;
-        else
-            return false;
+        return gold.get(x, y);
     }
     
     /**
@@ -254,10 +351,7 @@ public class World
         if (!isValidPosition(x,y)) return false;
         if (isUnknown(x,y)) return false;
         
-        if (w[x][y].contains(PIT))
-            return true;
-        else
-            return false;
+        return pits.get(x, y);
     }
     
     /**
@@ -274,10 +368,7 @@ public class World
         if (!isValidPosition(x,y)) return false;
         if (isUnknown(x,y)) return false;
         
-        if (w[x][y].contains(WUMPUS))
-            return true;
-        else
-            return false;
+        return wumpus.get(x, y);
     }
     
      /**
@@ -323,10 +414,7 @@ public class World
     {
         if (!isValidPosition(x,y)) return false;
         
-        if (w[x][y].contains(UNKNOWN))
-            return true;
-        else
-            return false;  
+        return !visited.get(x, y);
     }
     
     /**
@@ -347,21 +435,97 @@ public class World
     }
     
     /**
-     * Adds a percept to a square.
+     * Copies the breeze layer of all visited squares to a bitboard.
      * 
-     * @param x X position
-     * @param y Y position
-     * @param s Percept to add (see Percept constants)
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
      */
-    private void append(int x, int y, String s)
+    public BitBoard getBreezeMask(BitBoard dst)
     {
-        if (!isValidPosition(x,y))
-            return;
-        
-        if (!w[x][y].contains(s))
-        {
-            w[x][y] += s;
-        }
+        return visibleLayer(breeze, dst);
+    }
+    
+    /**
+     * Copies the stench layer of all visited squares to a bitboard.
+     * 
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
+     */
+    public BitBoard getStenchMask(BitBoard dst)
+    {
+        return visibleLayer(stench, dst);
+    }
+    
+    /**
+     * Copies the glitter layer of all visited squares to a bitboard.
+     * 
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
+     */
+    public BitBoard getGlitterMask(BitBoard dst)
+    {
+        return visibleLayer(gold, dst);
+    }
+    
+    /**
+     * Copies the pit layer of all visited squares to a bitboard.
+     * 
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
+     */
+    public BitBoard getPitMask(BitBoard dst)
+    {
+        return visibleLayer(pits, dst);
+    }
+    
+    /**
+     * Copies the Wumpus layer of all visited squares to a bitboard.
+     * 
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
+     */
+    public BitBoard getWumpusMask(BitBoard dst)
+    {
+        return visibleLayer(wumpus, dst);
+    }
+    
+    /**
+     * Copies the set of visited squares to a bitboard.
+     * 
+     * @param dst Bitboard to write to. Must be of the same size as the world.
+     * @return The dst bitboard
+     */
+    public BitBoard getVisitedMask(BitBoard dst)
+    {
+        dst.copyFrom(visited);
+        return dst;
+    }
+    
+    /**
+     * Copies a layer to a bitboard, keeping only the visited squares
+     * since unknown squares have no percepts.
+     * 
+     * @param layer Layer to copy
+     * @param dst Bitboard to write to
+     * @return The dst bitboard
+     */
+    private BitBoard visibleLayer(BitBoard layer, BitBoard dst)
+    {
+        dst.copyFrom(layer);
+        dst.and(visited);
+        return dst;
+    }
+    
+    /**
+     * Derives the breeze and stench layers from the pit and
+     * Wumpus layers.
+     */
+    private void updatePercepts()
+    {
+        breeze.clear();
+        breeze.addNeighbors(pits);
+        stench.clear();
+        stench.addNeighbors(wumpus);
     }
     
     /**
@@ -372,33 +536,255 @@ public class World
      */
     public void addWumpus(int x, int y)
     {
-        if (!w[x][y].contains(WUMPUS))
+        if (!wumpus.get(x, y))
         {
-            append(x,y,WUMPUS);
-            append(x-1,y,STENCH);
-            append(x+1,y,STENCH);
-            append(x,y-1,STENCH);
-            append(x,y+1,STENCH);
+            wumpus.set(x, y);
+            updatePercepts();
         }
     }
     
+    /**
+     * Creates a copy of this Wumpus World, including the
+     * player state and score.
+     * 
+     * @return The copy
+     */
     public World cloneWorld()
     {
-        //this.size = size;
-        String[][] w1 = new String[size+1][size+1];
-        int px,py,dirr;
-        px=pX;
-        py=pY;
-        dirr=dir;
-        for (int x = 0; x <= size; x++)
+        return new World(this);
+    }
+    
+    /**
+     * Copies another Wumpus World of the same size into this one,
+     * including the player state and score. Nothing is allocated, so
+     * a world can be reused for many simulations.
+     * 
+     * @param o World to copy
+     */
+    public void copyFrom(World o)
+    {
+        pits.copyFrom(o.pits);
+        wumpus.copyFrom(o.wumpus);
+        gold.copyFrom(o.gold);
+        breeze.copyFrom(o.breeze);
+        stench.copyFrom(o.stench);
+        visited.copyFrom(o.visited);
+        pX = o.pX;
+        pY = o.pY;
+        dir = o.dir;
+        wumpusAlive = o.wumpusAlive;
+        hasArrow = o.hasArrow;
+        isInPit = o.isInPit;
+        hasGold = o.hasGold;
+        gameOver = o.gameOver;
+        score = o.score;
+    }
+    
+    /**
+     * Replaces the pits, the Wumpus and the gold, and derives the
+     * percepts again. Used to simulate a world that matches what an
+     * agent has seen, so the layers should agree with the visited
+     * squares.
+     * 
+     * @param pitLayer Squares with a pit
+     * @param wumpusLayer Square of the Wumpus, empty if it is dead
+     * @param goldLayer Square of the gold
+     */
+    public void setHiddenLayers(BitBoard pitLayer, BitBoard wumpusLayer, BitBoard goldLayer)
+    {
+        pits.copyFrom(pitLayer);
+        wumpus.copyFrom(wumpusLayer);
+        gold.copyFrom(goldLayer);
+        updatePercepts();
+    }
+    
+    /**
+     * Starts logging actions, and returns a mark for the current state.
+     * Marks can be nested: undoing to a mark also undoes the marks taken
+     * after it.
+     * 
+     * @return Mark to pass to undoTo
+     */
+    public int mark()
+    {
+        logging = true;
+        return logSize;
+    }
+    
+    /**
+     * Takes back the actions executed after a mark, in reverse order.
+     * Only actions are logged, so the world must not be changed in other
+     * ways (addPit, copyFrom, ...) while a mark is in use.
+     * 
+     * @param mark Mark returned by mark()
+     */
+    public void undoTo(int mark)
+    {
+        while (logSize > mark)
         {
-            for (int y = 0; y <= size; y++)
+            logSize--;
+            int change = logChange[logSize];
+            int cell = change >> 2;
+            switch (change & 3)
             {
-                w1[x][y]= w[x][y];
+                case CHANGE_VISITED:
+                    visited.clear(cell);
+                    break;
+                case CHANGE_GOLD:
+                    gold.set(cell);
+                    break;
+                case CHANGE_WUMPUS:
+                    wumpus.set(cell);
+                    stench.addNeighbors(wumpus);
+                    break;
+                default:
+                    break;
             }
+            unpack(logState[logSize]);
         }
+    }
+    
+    /**
+     * Stops logging actions and forgets the log. The current state is kept.
+     */
+    public void clearLog()
+    {
+        logging = false;
+        logSize = 0;
+    }
+    
+    /**
+     * Creates an empty snapshot for this world.
+     * 
+     * @return Snapshot to pass to snapshot and restore
+     */
+    public Snapshot newSnapshot()
+    {
+        return new Snapshot(size);
+    }
+    
+    /**
+     * Copies the state that actions can change to a snapshot. Nothing
+     * is allocated.
+     * 
+     * @param s Snapshot created by newSnapshot
+     * @return The snapshot
+     */
+    public Snapshot snapshot(Snapshot s)
+    {
+        s.state = pack();
+        s.visited.copyFrom(visited);
+        s.gold.copyFrom(gold);
+        s.wumpus.copyFrom(wumpus);
+        return s;
+    }
+    
+    /**
+     * Returns the world to the state in a snapshot. The pits must be the
+     * same as when the snapshot was taken.
+     * 
+     * @param s Snapshot taken of this world
+     */
+    public void restore(Snapshot s)
+    {
+        unpack(s.state);
+        visited.copyFrom(s.visited);
+        gold.copyFrom(s.gold);
+        wumpus.copyFrom(s.wumpus);
+        stench.clear();
+        stench.addNeighbors(wumpus);
+    }
+    
+    /**
+     * The state of a world that actions can change: the player state,
+     * the score, and the visited, gold and Wumpus squares.
+     */
+    public static final class Snapshot
+    {
+        private long state;
+        private final BitBoard visited;
+        private final BitBoard gold;
+        private final BitBoard wumpus;
         
-        return new World(w1,size,px,py,dirr);
+        private Snapshot(int size)
+        {
+            visited = new BitBoard(size);
+            gold = new BitBoard(size);
+            wumpus = new BitBoard(size);
+        }
+    }
+    
+    /**
+     * Adds the player state to the action log.
+     */
+    private void log()
+    {
+        if (logSize == logState.length)
+        {
+            int n = Math.max(16, logSize * 2);
+            logState = Arrays.copyOf(logState, n);
+            logChange = Arrays.copyOf(logChange, n);
+        }
+        logState[logSize] = pack();
+        logChange[logSize] = CHANGE_NONE;
+        logSize++;
+    }
+    
+    /**
+     * Records the square changed by the action that is being logged.
+     * 
+     * @param cell Cell index
+     * @param change CHANGE_* constant
+     */
+    private void logChange(int cell, int change)
+    {
+        if (logging) logChange[logSize - 1] = cell << 2 | change;
+    }
+    
+    /**
+     * Packs the player state and the score into one value: the score
+     * in the high 32 bits, then the flags, the direction and the cell
+     * of the player.
+     * 
+     * @return Packed state
+     */
+    private long pack()
+    {
+        int flags = (wumpusAlive ? 1 : 0) | (hasArrow ? 2 : 0) | (isInPit ? 4 : 0)
+                | (hasGold ? 8 : 0) | (gameOver ? 16 : 0);
+        return (long)score << 32 | (long)flags << 27 | (long)dir << 25 | cell(pX, pY);
+    }
+    
+    /**
+     * Sets the player state and the score from a packed value.
+     * 
+     * @param v Packed state
+     */
+    private void unpack(long v)
+    {
+        int cell = (int)v & 0x1FFFFFF;
+        int flags = (int)(v >>> 27) & 31;
+        pX = cell % size + 1;
+        pY = cell / size + 1;
+        dir = (int)(v >>> 25) & 3;
+        wumpusAlive = (flags & 1) != 0;
+        hasArrow = (flags & 2) != 0;
+        isInPit = (flags & 4) != 0;
+        hasGold = (flags & 8) != 0;
+        gameOver = (flags & 16) != 0;
+        score = (int)(v >> 32);
+    }
+    
+    /**
+     * Returns the cell index of a square, see BoardGeometry.
+     * 
+     * @param x X position
+     * @param y Y position
+     * @return Cell index
+     */
+    private int cell(int x, int y)
+    {
+        return (y - 1) * size + (x - 1);
     }
     
     /**
@@ -409,13 +795,10 @@ public class World
      */
     public void addPit(int x, int y)
     {
-        if (!w[x][y].contains(PIT))
+        if (!pits.get(x, y))
         {
-            append(x,y,PIT);
-            append(x-1,y,BREEZE);
-            append(x+1,y,BREEZE);
-            append(x,y-1,BREEZE);
-            append(x,y+1,BREEZE);
+            pits.set(x, y);
+            updatePercepts();
         }
     }
     
@@ -427,10 +810,7 @@ public class World
      */
     public void addGold(int x, int y)
     {
-        if (!w[x][y].contains(GLITTER))
-        {
-            append(x,y,GLITTER);
-        }
+        gold.set(x, y);
     }
     
     /**
@@ -441,75 +821,92 @@ public class World
      */
     private void setVisited(int x, int y)
     {
-        if (w[x][y].contains(UNKNOWN))
-        {
-            w[x][y] = w[x][y].replaceAll(UNKNOWN, "");
-        }
+        visited.set(x, y);
     }
     
     /**
-     * Executes an action in the Wumpus World.
+     * Executes an action in the Wumpus World. Kept for compatibility,
+     * agents should use doAction(int) which does no string work.
      * 
      * @param a Action string (see Action constants)
      * @return True if the action was successful, false if action failed.
      */
     public boolean doAction(String a)
     {
-        if (gameOver) return false;
+        int r = doAction(toOpcode(a));
+        //Climbing has never been reported as a success
+        return r != RES_FAILED && r != RES_BUMPED && r != RES_CLIMBED;
+    }
+    
+    /**
+     * Converts an action string to an action opcode.
+     * 
+     * @param a Action string (see Action constants)
+     * @return Action opcode, or -1 if the string is not an action
+     */
+    public static int toOpcode(String a)
+    {
+        if (a.equals(A_MOVE)) return OP_MOVE;
+        if (a.equals(A_GRAB)) return OP_GRAB;
+        if (a.equals(A_CLIMB)) return OP_CLIMB;
+        if (a.equals(A_SHOOT)) return OP_SHOOT;
+        if (a.equals(A_TURN_LEFT)) return OP_TURN_LEFT;
+        if (a.equals(A_TURN_RIGHT)) return OP_TURN_RIGHT;
+        return -1;
+    }
+    
+    /**
+     * Executes an action in the Wumpus World.
+     * 
+     * @param op Action opcode (see Action opcodes)
+     * @return Result of the action (see Action result constants)
+     */
+    public int doAction(int op)
+    {
+        if (gameOver) return RES_FAILED;
+        if (logging) log();
         
         //Each action costs 1 score
         score -= 1;
         
-        if (a.equals(A_MOVE))
+        switch (op)
         {
-            if (!isInPit)
-            {
+            case OP_MOVE:
+                if (isInPit) return RES_FAILED;
                 if (dir == DIR_LEFT) return move(pX-1,pY);
                 if (dir == DIR_RIGHT) return move(pX+1,pY);
                 if (dir == DIR_UP) return move(pX,pY+1);
-                if (dir == DIR_DOWN) return move(pX,pY-1);
-            }
-        }
-        if (a.equals(A_TURN_LEFT))
-        {
-            dir--;
-            if (dir < 0) dir = 3;
-            return true;
-        }
-        if (a.equals(A_TURN_RIGHT))
-        {
-            dir++;
-            if (dir > 3) dir = 0;
-            return true;
-        }
-        if (a.equals(A_GRAB))
-        {
-            if (hasGlitter(pX,pY))
-            {
-                w[pX][pY] = w[pX][pY].replaceAll(GLITTER, "");
+                return move(pX,pY-1);
+            case OP_TURN_LEFT:
+                dir--;
+                if (dir < 0) dir = 3;
+                return RES_TURNED;
+            case OP_TURN_RIGHT:
+                dir++;
+                if (dir > 3) dir = 0;
+                return RES_TURNED;
+            case OP_GRAB:
+                if (!gold.get(pX, pY)) return RES_FAILED;
+                logChange(cell(pX, pY), CHANGE_GOLD);
+                gold.clear(pX, pY);
                 score += 1000;
                 hasGold = true;
                 gameOver = true;
-                return true;
-            }
-        }
-        if (a.equals(A_SHOOT))
-        {
-            if (hasArrow)
-            {
+                return RES_GRABBED_GOLD;
+            case OP_SHOOT:
+                if (!hasArrow) return RES_FAILED;
                 score -= 10;
                 hasArrow = false;
                 shoot();
-                return true;
-            }
-        }
-        if (a.equals(A_CLIMB))
-        {
-            isInPit = false;
+                return wumpusAlive ? RES_MISSED : RES_KILLED_WUMPUS;
+            case OP_CLIMB:
+                if (!isInPit) return RES_FAILED;
+                isInPit = false;
+                return RES_CLIMBED;
+            default:
+                //Action failed
+                return RES_FAILED;
         }
-        
-        //Action failed
-        return false;
     }
     
     /**
@@ -521,28 +918,28 @@ public class World
         {
             for (int x = pX; x <= size; x++)
             {
-                if (w[x][pY].contains(WUMPUS)) removeWumpus();
+                if (wumpus.get(x, pY)) removeWumpus();
             }
         }
         if (dir == DIR_LEFT)
         {
-            for (int x = pX; x >= 0; x--)
+            for (int x = pX; x >= 1; x--)
             {
-                if (w[x][pY].contains(WUMPUS)) removeWumpus();
+                if (wumpus.get(x, pY)) removeWumpus();
             }
         }
         if (dir == DIR_UP)
         {
             for (int y = pY; y <= size; y++)
             {
-                if (w[pX][y].contains(WUMPUS)) removeWumpus();
+                if (wumpus.get(pX, y)) removeWumpus();
             }
         }
         if (dir == DIR_DOWN)
         {
-            for (int y = pY; y >= 0; y--)
+            for (int y = pY; y >= 1; y--)
             {
-                if (w[pX][y].contains(WUMPUS)) removeWumpus();
+                if (wumpus.get(pX, y)) removeWumpus();
             }
         }
     }
@@ -553,14 +950,9 @@ public class World
      */
     private void removeWumpus()
     {
-        for (int x = 1; x <= 4; x++)
-        {
-            for (int y = 1; y <= 4; y++)
-            {
-                w[x][y] = w[x][y].replaceAll(WUMPUS, "");
-                w[x][y] = w[x][y].replaceAll(STENCH, "");
-            }
-        }
+        logChange(wumpus.nextSetBit(0), CHANGE_WUMPUS);
+        wumpus.clear();
+        stench.clear();
         
         wumpusAlive = false;
     }
@@ -570,19 +962,20 @@ public class World
      * 
      * @param nX New X position
      * @param nY New Y position
-     * @return True if the move actions was successful, false otherwise
+     * @return Result of the move (see Action result constants)
      */
-    private boolean move(int nX, int nY)
+    private int move(int nX, int nY)
     {
         //Check if valid
         if (!isValidPosition(nX, nY))
         {
-            return false;
+            return RES_BUMPED;
         }
         
         pX = nX;
         pY = nY;
         
+        if (!visited.get(pX, pY)) logChange(cell(pX, pY), CHANGE_VISITED);
         setVisited(pX, pY);
         
         if(hasWumpus(pX,pY))
@@ -596,6 +989,8 @@ public class World
             isInPit = true;
         }
         
-        return true;    
+        if (gameOver) return RES_EATEN;
+        if (isInPit) return RES_FELL_IN_PIT;
+        return RES_MOVED;
     }
 }
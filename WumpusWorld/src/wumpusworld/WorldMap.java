@@ -9,12 +9,13 @@ import java.awt.Point;
  * 
  * @author Johan Hagelbäck
  */
-public class WorldMap
+public class WorldMap implements MapView
 {
     private int size;
     private Point wumpus;
     private Point gold;
     private Vector<Point> pits;
+    private long seed = -1;
     
     /**
      * Creates a new map instance.
@@ -60,6 +61,26 @@ public class WorldMap
         pits.add(new Point(x,y));
     }
     
+    /**
+     * Sets the seed the map was generated from.
+     * 
+     * @param seed The seed
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+    
+    /**
+     * Returns the seed the map was generated from.
+     * 
+     * @return The seed, or -1 if the map was not generated
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+    
     /**
      * Returns the size of the world map.
      * 
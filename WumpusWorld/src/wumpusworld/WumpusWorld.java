@@ -1,12 +1,17 @@
 package wumpusworld;
 
-import java.util.Vector;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 /**
  * Starting class for the Wumpus World program. The program
  * has three options: 1) Run a GUI where the Wumpus World can be
  * solved step by step manually or by an agent, or 2) run
  * a simulation with random worlds over a number of games,
- * or 3) run a simulation over the worlds read from a map file.
+ * 3) run a simulation over the worlds read from a map file, or
+ * 4) run a long campaign of random worlds as a tournament.
  * 
  * @author Johan Hagelbäck
  */
@@ -40,6 +45,10 @@ public class WumpusWorld {
         {
             runSimulatorDB();
         }
+        if (option.equalsIgnoreCase("tournament"))
+        {
+            runTournament();
+        }
     }
     
     /**
@@ -52,21 +61,92 @@ public class WumpusWorld {
     
     /**
      * Starts the program in simulator mode with
-     * maps read from a data file.
+     * maps read from a data file. The maps are read
+     * one at a time while the games are played. If a
+     * map can not be read, the error is printed and the
+     * results of the maps before it are reported. The
+     * data file can also be a map corpus written by
+     * MapCorpusWriter.
      */
     private void runSimulatorDB()
     {
-        MapReader mr = new MapReader();
-        Vector<WorldMap> maps = mr.readMaps();
+        File file = new File(Config.getMapfile());
+        if (MapCorpus.isCorpus(file))
+        {
+            try
+            {
+                runMaps(new MapCorpus(file).iterator());
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Unable to read map corpus: " + ex.getMessage());
+            }
+            return;
+        }
         
-        double totScore = 0;
-        for (int i = 0; i < maps.size(); i++)
+        MapReader mr = new MapReader();
+        MapReader.MapIterator maps = null;
+        try
         {
-            World w = maps.get(i).generateWorld();
-            totScore += (double)runSimulation(w);
+            maps = mr.iterator();
+            runMaps(untilError(maps));
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Unable to read map file: " + ex.getMessage());
+        }
+        finally
+        {
+            if (maps != null) maps.close();
         }
-        totScore = totScore / (double)maps.size();
-        System.out.println("Average score: " + totScore);
+    }
+    
+    /**
+     * Ends the maps of a map file at the first map that
+     * can not be read, and prints the error.
+     * 
+     * @param maps Maps of the map file
+     * @return The maps before the first error
+     */
+    private Iterator<WorldMap> untilError(final Iterator<WorldMap> maps)
+    {
+        return new Iterator<WorldMap>()
+        {
+            private boolean failed = false;
+            
+            @Override
+            public boolean hasNext()
+            {
+                if (failed) return false;
+                try
+                {
+                    return maps.hasNext();
+                }
+                catch (UncheckedIOException ex)
+                {
+                    System.out.println("Unable to read map file: " + ex.getMessage());
+                }
+                catch (MapFormatException ex)
+                {
+                    System.out.println("Unable to read map file: " + ex.getMessage());
+                }
+                failed = true;
+                return false;
+            }
+            
+            @Override
+            public WorldMap next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+                return maps.next();
+            }
+            
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
     
     /**
@@ -75,34 +155,115 @@ public class WumpusWorld {
      */
     private void runSimulator()
     {
-        double totScore = 0;
-        for (int i = 0; i < 10; i++)
+        AgentOptions.getDefault().setPitCount(MapGenerator.PITS);
+        runMaps(MapGenerator.getRandomMaps(Config.getInt("FirstSeed", 0), Config.getInt("Games", 10)));
+    }
+    
+    /**
+     * Plays one game on each map and prints the results.
+     * The agents have no decision time limit unless one
+     * is set in config.txt, so the results do not depend
+     * on the load of the machine.
+     * 
+     * @param maps Maps to play
+     */
+    private void runMaps(Iterator<? extends MapView> maps)
+    {
+        AgentOptions.getDefault().setDecisionTimeMillis(Config.getInt("DecisionTimeMillis", 0));
+        SimulationRunner runner = SimulationRunner.fromConfig();
+        ResultSink sink = openSink();
+        runner.setSink(sink);
+        double totScore;
+        try
         {
-            WorldMap w = MapGenerator.getRandomMap(i);
-            totScore += (double)runSimulation(w.generateWorld());
+            totScore = runner.run(maps);
+        }
+        finally
+        {
+            closeSink(sink);
         }
-        totScore = totScore / (double)10;
         System.out.println("Average score: " + totScore);
+        runner.getStatistics().print(System.out);
+        printStatistics();
+    }
+    
+    /**
+     * Starts the program in tournament mode with
+     * random maps, and prints the progress every 10 seconds.
+     */
+    private void runTournament()
+    {
+        AgentOptions.getDefault().setPitCount(MapGenerator.PITS);
+        Tournament t = Tournament.fromConfig();
+        ResultSink sink = openSink();
+        t.setSink(sink);
+        t.setProgress(new Tournament.Progress()
+        {
+            @Override
+            public void report(Tournament t)
+            {
+                System.out.println(t.getFinished() + " games, average score " + t.getAverageScore());
+            }
+        }, 10000);
+        t.run(MapGenerator.getRandomMaps(Config.getInt("FirstSeed", 0), Config.getInt("Games", 100000)));
+        closeSink(sink);
+        System.out.println("Average score: " + t.getAverageScore());
+        t.getStatistics().print(System.out);
+        if (t.getFailed() > 0) System.out.println("Failed games: " + t.getFailed());
+        printStatistics();
+    }
+    
+    /**
+     * Opens the result file from config.txt.
+     * 
+     * @return Sink that writes the result file, or null if no file is set or it could not be created
+     */
+    private ResultSink openSink()
+    {
+        String file = Config.getString("ResultFile", "");
+        if (file.equals("")) return null;
+        try
+        {
+            return new CsvResultSink(new File(file));
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Unable to create result file: " + ex.getMessage());
+            return null;
+        }
     }
     
     /**
-     * Runs the solver agent for the specified Wumpus
-     * World.
+     * Writes the rest of the results and closes the result file.
      * 
-     * @param w Wumpus World
-     * @return Achieved score
+     * @param sink Sink to close, or null
      */
-    private int runSimulation(World w)
+    private void closeSink(ResultSink sink)
     {
-        int actions = 0;
-        Agent a = new MyAgent(w);
-        while (!w.gameOver())
+        if (sink == null) return;
+        try
+        {
+            sink.close();
+        }
+        catch (IOException ex)
         {
-            a.doAction();
-            actions++;
+            System.out.println("Unable to write result file: " + ex.getMessage());
         }
-        int score = w.getScore();
-        System.out.println("Simulation ended after " + actions + " actions. Score " + score);
-        return score;
+    }
+    
+    /**
+     * Prints how the agents made their decisions, and the hit and
+     * miss counters of the posterior cache shared by the agents.
+     */
+    private void printStatistics()
+    {
+        AgentOptions o = AgentOptions.getDefault();
+        System.out.println("Decisions: " + o.getDecisions(AgentOptions.DECISION_DEDUCED) + " deduced, "
+                + o.getDecisions(AgentOptions.DECISION_CACHED) + " cached, "
+                + o.getDecisions(AgentOptions.DECISION_APPROXIMATE) + " approximate, "
+                + o.getDecisions(AgentOptions.DECISION_INFERRED) + " inferred");
+        PosteriorCache c = o.getPosteriorCache();
+        if (c == null) return;
+        System.out.println("Posterior cache: " + c.getHits() + " hits, " + c.getMisses() + " misses, " + c.size() + " states");
     }
 }
@@ -0,0 +1,198 @@
+package wumpusworld;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the pit probabilities of BeliefState and FrontierInference
+ * against a brute-force count over all pit placements, with and without
+ * a known number of pits.
+ */
+public class FrontierInferenceTest
+{
+    private static final int SIZE = 4;
+    private static final int MAPS = 40;
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Tests the probabilities when the number of pits is known.
+     */
+    @Test
+    public void testKnownPitCount()
+    {
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            explore(seed, false, 0);
+        }
+    }
+
+    /**
+     * Tests the probabilities when the number of pits is not known,
+     * so each square has a pit with the prior probability.
+     */
+    @Test
+    public void testUnknownPitCount()
+    {
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            explore(seed, true, 0);
+        }
+    }
+
+    /**
+     * Tests that components enumerated in parallel give the same
+     * probabilities.
+     */
+    @Test
+    public void testParallelEnumeration()
+    {
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            explore(seed, false, 1);
+            explore(seed, true, 1);
+        }
+    }
+
+    /**
+     * Explores a random map square by square, and checks the
+     * probabilities after each step. The belief state is kept between
+     * steps, so components that are not counted again are checked too.
+     *
+     * @param seed Seed of the map and of the exploration
+     * @param unknown True if the number of pits is not known
+     * @param parallelism Parallel threshold of the belief state
+     */
+    private static void explore(int seed, boolean unknown, int parallelism)
+    {
+        WorldMap map = MapGenerator.getRandomMap(seed);
+        BoardGeometry g = BoardGeometry.of(SIZE);
+        int wumpus = g.index(map.getWumpus().x, map.getWumpus().y);
+        Random rnd = new Random(seed);
+        BeliefState b = new BeliefState(SIZE, hasBreeze(g, map, 0), hasStench(g, wumpus, 0));
+        b.setParallelism(parallelism);
+
+        while (true)
+        {
+            int pits = unknown ? FrontierInference.UNKNOWN_PITS : MapGenerator.PITS - b.getKnownPits().cardinality();
+            double[] expected = bruteForce(g, b, pits);
+            double[] actual = new double[g.getCells()];
+            b.pitProbabilities(pits, actual);
+            BitBoard frontier = b.getFrontier();
+            for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                assertEquals("Map " + seed + ", cell " + f, expected[f], actual[f], EPSILON);
+            }
+
+            //Visit a random frontier square without the Wumpus
+            int next = -1;
+            int candidates = 0;
+            for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+            {
+                if (f == wumpus) continue;
+                candidates++;
+                if (rnd.nextInt(candidates) == 0) next = f;
+            }
+            if (next < 0) return;
+            b.visit(next, hasBreeze(g, map, next), hasStench(g, wumpus, next));
+            if (map.hasPit(g.x(next), g.y(next))) b.pitFound(next);
+        }
+    }
+
+    /**
+     * Checks if a square of a map has a breeze.
+     */
+    private static boolean hasBreeze(BoardGeometry g, WorldMap map, int cell)
+    {
+        for (int n : g.neighbors(cell))
+        {
+            if (map.hasPit(g.x(n), g.y(n))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a square has a stench.
+     */
+    private static boolean hasStench(BoardGeometry g, int wumpus, int cell)
+    {
+        for (int n : g.neighbors(cell))
+        {
+            if (n == wumpus) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calculates the pit probabilities of the frontier squares by
+     * weighting every placement of pits in the unvisited squares that
+     * explains the breezes.
+     *
+     * @param g Geometry of the world
+     * @param b Belief state
+     * @param pits Number of pits that have not been found, or FrontierInference.UNKNOWN_PITS
+     * @return Probabilities, indexed by cell
+     */
+    private static double[] bruteForce(BoardGeometry g, BeliefState b, int pits)
+    {
+        int cells = g.getCells();
+        long visited = b.getVisited().getWord(0);
+        long breeze = b.getBreeze().getWord(0);
+        long known = b.getKnownPits().getWord(0);
+        int[] free = new int[cells];
+        int n = 0;
+        for (int c = 0; c < cells; c++)
+        {
+            if ((visited & 1L << c) == 0) free[n++] = c;
+        }
+
+        double total = 0;
+        double[] weights = new double[cells];
+        for (int s = 0; s < 1 << n; s++)
+        {
+            int k = Integer.bitCount(s);
+            if (pits != FrontierInference.UNKNOWN_PITS && k != pits) continue;
+            long placed = known;
+            for (int i = 0; i < n; i++)
+            {
+                if ((s & 1 << i) != 0) placed |= 1L << free[i];
+            }
+            if (!explains(g, visited, breeze, placed)) continue;
+
+            double weight = 1;
+            if (pits == FrontierInference.UNKNOWN_PITS)
+            {
+                weight = Math.pow(FrontierInference.PIT_PRIOR, k) * Math.pow(1 - FrontierInference.PIT_PRIOR, n - k);
+            }
+            total += weight;
+            for (int i = 0; i < n; i++)
+            {
+                if ((s & 1 << i) != 0) weights[free[i]] += weight;
+            }
+        }
+        for (int c = 0; c < cells; c++)
+        {
+            weights[c] /= total;
+        }
+        return weights;
+    }
+
+    /**
+     * Checks that a placement of pits gives exactly the breezes that
+     * were perceived.
+     */
+    private static boolean explains(BoardGeometry g, long visited, long breeze, long placed)
+    {
+        for (long v = visited; v != 0; v &= v - 1)
+        {
+            int c = Long.numberOfTrailingZeros(v);
+            boolean pit = false;
+            for (int nb : g.neighbors(c))
+            {
+                if ((placed & 1L << nb) != 0) pit = true;
+            }
+            if (pit != ((breeze & 1L << c) != 0)) return false;
+        }
+        return true;
+    }
+}
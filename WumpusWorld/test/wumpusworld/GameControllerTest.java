@@ -0,0 +1,113 @@
+package wumpusworld;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that games are stopped when they do not end.
+ */
+public class GameControllerTest
+{
+    private static final long TIMEOUT_MILLIS = 100;
+
+    //Lets the agent of the watchdog test return when the test is done
+    private static volatile boolean released = false;
+
+    /**
+     * Tests that a game is stopped as STUCK after the maximum number of
+     * actions.
+     */
+    @Test
+    public void testStuck()
+    {
+        World w = MapGenerator.getRandomMap(0).generateWorld();
+        GameResult r = new GameController(10, 0).play(w, new Turner(w, 0), 0);
+        assertEquals(GameResult.STUCK, r.getOutcome());
+        assertEquals(10, r.getActions());
+    }
+
+    /**
+     * Tests that a game whose time has run out is stopped between
+     * actions.
+     */
+    @Test
+    public void testTimeout()
+    {
+        World w = MapGenerator.getRandomMap(0).generateWorld();
+        GameResult r = new GameController(0, TIMEOUT_MILLIS).play(w, new Turner(w, 1), 0);
+        assertEquals(GameResult.TIMEOUT, r.getOutcome());
+        assertTrue(r.getActions() > 0);
+    }
+
+    /**
+     * Tests that the watchdog abandons a game whose agent does not
+     * return from a decision, and reports the actions before it.
+     */
+    @Test(timeout = 10000)
+    public void testWatchdog()
+    {
+        final World w = MapGenerator.getRandomMap(0).generateWorld();
+        Agent hanging = new Agent()
+        {
+            private int actions = 0;
+
+            @Override
+            public void doAction()
+            {
+                if (++actions <= 3)
+                {
+                    w.doAction(World.OP_TURN_LEFT);
+                    return;
+                }
+                while (!released)
+                {
+                    //Ignores interrupts, like an agent stuck in a loop
+                    Thread.interrupted();
+                }
+            }
+        };
+        long start = System.nanoTime();
+        GameResult r;
+        try
+        {
+            r = new GameController(0, TIMEOUT_MILLIS).play(w, hanging, 0);
+        }
+        finally
+        {
+            released = true;
+        }
+        long millis = (System.nanoTime() - start) / 1000000L;
+        assertEquals(GameResult.TIMEOUT, r.getOutcome());
+        assertEquals(3, r.getActions());
+        assertTrue(millis >= TIMEOUT_MILLIS + GameController.WATCHDOG_GRACE_MILLIS);
+    }
+
+    /**
+     * An agent that turns left and then sleeps.
+     */
+    private static final class Turner implements Agent
+    {
+        private final World w;
+        private final long sleepMillis;
+
+        Turner(World w, long sleepMillis)
+        {
+            this.w = w;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void doAction()
+        {
+            w.doAction(World.OP_TURN_LEFT);
+            try
+            {
+                Thread.sleep(sleepMillis);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package wumpusworld;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that maps written by MapCorpusWriter are read back unchanged
+ * by MapCorpus.
+ */
+public class MapCorpusTest
+{
+    private static final int MAPS = 1000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("maps", ".corpus");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    /**
+     * Tests that random maps are read back with their seeds, and give
+     * the same worlds.
+     */
+    @Test
+    public void testRandomMaps() throws IOException
+    {
+        assertEquals(MAPS, MapCorpusWriter.write(MapGenerator.getRandomMaps(0, MAPS), file.getPath()));
+        assertTrue(MapCorpus.isCorpus(file));
+        MapCorpus corpus = new MapCorpus(file);
+        assertEquals(MAPS, corpus.size());
+        for (int i = 0; i < MAPS; i++)
+        {
+            WorldMap expected = MapGenerator.getRandomMap(i);
+            MapView actual = corpus.get(i);
+            assertEquals(i, actual.getSeed());
+            assertSameMap("Map " + i, expected, actual);
+            assertSameWorld("Map " + i, expected.generateWorld(), corpus.generateWorld(i));
+        }
+    }
+
+    /**
+     * Tests maps of other sizes, without seeds, and with negative seeds.
+     */
+    @Test
+    public void testMapsWithoutSeed() throws IOException
+    {
+        ArrayList<WorldMap> maps = new ArrayList<WorldMap>();
+        for (int size = 1; size <= MapCorpus.MAX_SIZE; size++)
+        {
+            WorldMap m = new WorldMap(size);
+            m.addWumpus(size, 1);
+            m.addGold(1, size);
+            for (int c = 1; c < size * size; c += 3)
+            {
+                m.addPit(c % size + 1, c / size + 1);
+            }
+            if (size % 2 == 0) m.setSeed(Integer.MIN_VALUE + size);
+            maps.add(m);
+        }
+        MapCorpusWriter.write(maps.iterator(), file.getPath());
+
+        MapCorpus corpus = new MapCorpus(file);
+        assertEquals(maps.size(), corpus.size());
+        Iterator<MapView> it = corpus.iterator();
+        for (WorldMap expected : maps)
+        {
+            MapView actual = it.next();
+            assertEquals(expected.getSeed(), actual.getSeed());
+            assertSameMap("Size " + expected.getSize(), expected, actual);
+            assertSameWorld("Size " + expected.getSize(), expected.generateWorld(), actual.generateWorld());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Tests that a range of maps ends at the last map of the corpus.
+     */
+    @Test
+    public void testRange() throws IOException
+    {
+        MapCorpusWriter.write(MapGenerator.getRandomMaps(100, 10), file.getPath());
+        MapCorpus corpus = new MapCorpus(file);
+        Iterator<MapView> it = corpus.iterator(7, 5);
+        for (int seed = 107; seed < 110; seed++)
+        {
+            assertEquals(seed, it.next().getSeed());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Tests that maps whose seed or size does not fit in a record are
+     * rejected.
+     */
+    @Test
+    public void testRejectedMaps()
+    {
+        WorldMap m = MapGenerator.getRandomMap(1);
+        m.setSeed(1L << 40);
+        try
+        {
+            MapCorpusWriter.write(Collections.singletonList(m).iterator(), file.getPath());
+            fail("Seed out of range was written");
+        }
+        catch (IOException ex)
+        {
+        }
+
+        m = new WorldMap(MapCorpus.MAX_SIZE + 1);
+        m.addWumpus(2, 2);
+        m.addGold(3, 3);
+        try
+        {
+            MapCorpusWriter.write(Collections.singletonList(m).iterator(), file.getPath());
+            fail("Map too large was written");
+        }
+        catch (IOException ex)
+        {
+        }
+    }
+
+    /**
+     * Tests that a text map file is not taken for a corpus.
+     */
+    @Test
+    public void testTextFile() throws IOException
+    {
+        FileWriter out = new FileWriter(file);
+        out.write("4 2 2 3 3 4 4 1 4 2 4 3\n");
+        out.close();
+        assertFalse(MapCorpus.isCorpus(file));
+        try
+        {
+            new MapCorpus(file);
+            fail("Text file was opened as a corpus");
+        }
+        catch (IOException ex)
+        {
+        }
+    }
+
+    /**
+     * Checks that two maps have the same size and objects.
+     */
+    private static void assertSameMap(String msg, MapView expected, MapView actual)
+    {
+        assertEquals(msg, expected.getSize(), actual.getSize());
+        assertEquals(msg, expected.getWumpus(), actual.getWumpus());
+        assertEquals(msg, expected.getGold(), actual.getGold());
+        assertEquals(msg, new HashSet<Point>(expected.getPits()), new HashSet<Point>(actual.getPits()));
+        int size = expected.getSize();
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                assertEquals(msg, expected.hasPit(x, y), actual.hasPit(x, y));
+            }
+        }
+    }
+
+    /**
+     * Checks that two new worlds give the same game: the same random
+     * actions give the same results and percepts in both.
+     */
+    private static void assertSameWorld(String msg, World expected, World actual)
+    {
+        int size = expected.getSize();
+        assertEquals(msg, size, actual.getSize());
+        Random rnd = new Random(size);
+        for (int i = 0; i < 200 && !expected.gameOver(); i++)
+        {
+            int op = rnd.nextInt(4) == 0 ? World.OP_TURN_LEFT : rnd.nextInt(8) == 0 ? World.OP_GRAB : World.OP_MOVE;
+            assertEquals(msg, expected.doAction(op), actual.doAction(op));
+            assertEquals(msg, expected.getScore(), actual.getScore());
+        }
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                assertEquals(msg, expected.isVisited(x, y), actual.isVisited(x, y));
+                assertEquals(msg, expected.hasBreeze(x, y), actual.hasBreeze(x, y));
+                assertEquals(msg, expected.hasStench(x, y), actual.hasStench(x, y));
+                assertEquals(msg, expected.hasPit(x, y), actual.hasPit(x, y));
+                assertEquals(msg, expected.hasWumpus(x, y), actual.hasWumpus(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package wumpusworld;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a state and its mirror image along the diagonal through
+ * (1,1) share a table entry, and that the table gives the posteriors of
+ * BeliefState for both.
+ */
+public class PosteriorTableTest
+{
+    private static final int SIZE = PosteriorTable.SIZE;
+    private static final int MAPS = 200;
+
+    private static final BoardGeometry g = BoardGeometry.of(SIZE);
+    private static File file;
+    private static PosteriorTable table;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException
+    {
+        file = File.createTempFile("posteriors", ".bin");
+        PosteriorTableGenerator gen = new PosteriorTableGenerator();
+        gen.generate();
+        gen.write(file.getPath());
+        table = new PosteriorTable(file);
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        table = null;
+        file.delete();
+    }
+
+    /**
+     * Tests that transpose mirrors each square, and that mirroring
+     * twice gives the same set.
+     */
+    @Test
+    public void testTranspose()
+    {
+        for (int c = 0; c < g.getCells(); c++)
+        {
+            assertEquals(1L << mirror(c), PosteriorTable.transpose(1L << c));
+        }
+        Random rnd = new Random(1);
+        for (int i = 0; i < 1000; i++)
+        {
+            long mask = rnd.nextInt(1 << 16);
+            assertEquals(mask, PosteriorTable.transpose(PosteriorTable.transpose(mask)));
+            assertEquals(PosteriorTable.transpose(PosteriorTable.frontier(mask)),
+                    PosteriorTable.frontier(PosteriorTable.transpose(mask)));
+        }
+    }
+
+    /**
+     * Tests that a key and the key of the mirrored state have the same
+     * canonical key, which is one of the two.
+     */
+    @Test
+    public void testCanonical()
+    {
+        Random rnd = new Random(2);
+        for (int i = 0; i < 1000; i++)
+        {
+            long visited = rnd.nextInt(1 << 16) | 1;
+            long breeze = rnd.nextInt(1 << 16) & visited;
+            long pits = rnd.nextInt(1 << 16) & visited & ~1L;
+            long stench = rnd.nextInt(1 << 16) & visited;
+
+            long key = PosteriorTable.pitKey(visited, breeze, pits);
+            long mirrored = PosteriorTable.pitKey(PosteriorTable.transpose(visited),
+                    PosteriorTable.transpose(breeze), PosteriorTable.transpose(pits));
+            long canon = PosteriorTable.canonical(key);
+            assertEquals(canon, PosteriorTable.canonical(mirrored));
+            assertTrue(canon == key || canon == mirrored);
+            assertEquals(Math.min(key, mirrored), canon);
+
+            key = PosteriorTable.wumpusKey(visited, stench);
+            mirrored = PosteriorTable.wumpusKey(PosteriorTable.transpose(visited), PosteriorTable.transpose(stench));
+            assertEquals(PosteriorTable.canonical(key), PosteriorTable.canonical(mirrored));
+        }
+    }
+
+    /**
+     * Explores random maps and their mirror images side by side, and
+     * checks that the table gives the posteriors of BeliefState for
+     * both states after each step.
+     */
+    @Test
+    public void testMirroredLookup()
+    {
+        double tolerance = 1 / PosteriorTable.SCALE;
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            WorldMap map = MapGenerator.getRandomMap(seed);
+            int wumpus = g.index(map.getWumpus().x, map.getWumpus().y);
+            Random rnd = new Random(seed);
+            BeliefState b = new BeliefState(SIZE, hasBreeze(map, 0), hasStench(wumpus, 0));
+            BeliefState m = new BeliefState(SIZE, hasBreeze(map, 0), hasStench(wumpus, 0));
+
+            while (true)
+            {
+                int pits = MapGenerator.PITS - b.getKnownPits().cardinality();
+                double[] pit = new double[g.getCells()];
+                double[] wumpusP = new double[g.getCells()];
+                b.pitProbabilities(pits, pit);
+                b.wumpusProbabilities(wumpusP);
+
+                double[] tablePit = new double[g.getCells()];
+                double[] tableWumpus = new double[g.getCells()];
+                double[] mirrorPit = new double[g.getCells()];
+                double[] mirrorWumpus = new double[g.getCells()];
+                assertTrue(table.lookup(b, tablePit, tableWumpus));
+                assertTrue(table.lookup(m, mirrorPit, mirrorWumpus));
+
+                BitBoard frontier = b.getFrontier();
+                for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+                {
+                    String msg = "Map " + seed + ", cell " + f;
+                    assertEquals(msg, pit[f], tablePit[f], tolerance);
+                    assertEquals(msg, wumpusP[f], tableWumpus[f], tolerance);
+                    assertEquals(msg, tablePit[f], mirrorPit[mirror(f)], 0);
+                    assertEquals(msg, tableWumpus[f], mirrorWumpus[mirror(f)], 0);
+                }
+
+                //Visit a random frontier square without the Wumpus
+                int next = -1;
+                int candidates = 0;
+                for (int f = frontier.nextSetBit(0); f >= 0; f = frontier.nextSetBit(f + 1))
+                {
+                    if (f == wumpus) continue;
+                    candidates++;
+                    if (rnd.nextInt(candidates) == 0) next = f;
+                }
+                if (next < 0) break;
+                boolean breeze = hasBreeze(map, next);
+                boolean stench = hasStench(wumpus, next);
+                b.visit(next, breeze, stench);
+                m.visit(mirror(next), breeze, stench);
+                if (map.hasPit(g.x(next), g.y(next)))
+                {
+                    b.pitFound(next);
+                    m.pitFound(mirror(next));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the mirror image of a cell along the diagonal through (1,1).
+     */
+    private static int mirror(int cell)
+    {
+        return g.index(g.y(cell), g.x(cell));
+    }
+
+    /**
+     * Checks if a square of a map has a breeze.
+     */
+    private static boolean hasBreeze(WorldMap map, int cell)
+    {
+        for (int n : g.neighbors(cell))
+        {
+            if (map.hasPit(g.x(n), g.y(n))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a square has a stench.
+     */
+    private static boolean hasStench(int wumpus, int cell)
+    {
+        for (int n : g.neighbors(cell))
+        {
+            if (n == wumpus) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,151 @@
+package wumpusworld;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that undoTo takes a world back to the state it had when the
+ * mark was taken.
+ */
+public class WorldTest
+{
+    private static final int MAPS = 200;
+    private static final int ACTIONS = 40;
+
+    /**
+     * Tests that random actions are undone, including games that end
+     * and actions that fail.
+     */
+    @Test
+    public void testUndo()
+    {
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            Random rnd = new Random(seed);
+            World w = MapGenerator.getRandomMap(seed).generateWorld();
+            World start = w.cloneWorld();
+            int mark = w.mark();
+            int[] results = new int[ACTIONS];
+            int[] ops = new int[ACTIONS];
+            for (int i = 0; i < ACTIONS; i++)
+            {
+                ops[i] = randomAction(rnd);
+                results[i] = w.doAction(ops[i]);
+            }
+            World end = w.cloneWorld();
+
+            w.undoTo(mark);
+            assertSameState("Map " + seed, start, w);
+
+            //The same actions give the same results again
+            for (int i = 0; i < ACTIONS; i++)
+            {
+                assertEquals("Map " + seed + ", action " + i, results[i], w.doAction(ops[i]));
+            }
+            assertSameState("Map " + seed, end, w);
+        }
+    }
+
+    /**
+     * Tests that undoing to a mark also undoes the marks taken after it.
+     */
+    @Test
+    public void testNestedMarks()
+    {
+        for (int seed = 0; seed < MAPS; seed++)
+        {
+            Random rnd = new Random(seed);
+            World w = MapGenerator.getRandomMap(seed).generateWorld();
+            World start = w.cloneWorld();
+            int outer = w.mark();
+            for (int i = 0; i < ACTIONS / 2; i++)
+            {
+                w.doAction(randomAction(rnd));
+            }
+            World middle = w.cloneWorld();
+            int inner = w.mark();
+            for (int i = 0; i < ACTIONS / 2; i++)
+            {
+                w.doAction(randomAction(rnd));
+            }
+
+            w.undoTo(inner);
+            assertSameState("Map " + seed, middle, w);
+            for (int i = 0; i < ACTIONS / 2; i++)
+            {
+                w.doAction(randomAction(rnd));
+            }
+            w.undoTo(outer);
+            assertSameState("Map " + seed, start, w);
+        }
+    }
+
+    /**
+     * Tests that the state is kept when the log is cleared.
+     */
+    @Test
+    public void testClearLog()
+    {
+        Random rnd = new Random(0);
+        World w = MapGenerator.getRandomMap(0).generateWorld();
+        w.mark();
+        for (int i = 0; i < ACTIONS; i++)
+        {
+            w.doAction(randomAction(rnd));
+        }
+        World end = w.cloneWorld();
+        w.clearLog();
+        assertSameState("Map 0", end, w);
+        w.undoTo(w.mark());
+        assertSameState("Map 0", end, w);
+    }
+
+    /**
+     * Returns a random action. Moves and turns are more likely, so the
+     * player gets around the world.
+     */
+    private static int randomAction(Random rnd)
+    {
+        int r = rnd.nextInt(20);
+        if (r < 8) return World.OP_MOVE;
+        if (r < 12) return World.OP_TURN_LEFT;
+        if (r < 16) return World.OP_TURN_RIGHT;
+        if (r < 18) return World.OP_GRAB;
+        if (r < 19) return World.OP_SHOOT;
+        return World.OP_CLIMB;
+    }
+
+    /**
+     * Checks that two worlds have the same player state, score and layers.
+     */
+    private static void assertSameState(String msg, World expected, World actual)
+    {
+        assertEquals(msg, expected.getScore(), actual.getScore());
+        assertEquals(msg, expected.gameOver(), actual.gameOver());
+        assertEquals(msg, expected.getPlayerX(), actual.getPlayerX());
+        assertEquals(msg, expected.getPlayerY(), actual.getPlayerY());
+        assertEquals(msg, expected.getDirection(), actual.getDirection());
+        assertEquals(msg, expected.isInPit(), actual.isInPit());
+        assertEquals(msg, expected.hasArrow(), actual.hasArrow());
+        assertEquals(msg, expected.wumpusAlive(), actual.wumpusAlive());
+        assertEquals(msg, expected.hasGold(), actual.hasGold());
+
+        int size = expected.getSize();
+        assertEquals(msg, expected.getVisitedMask(new BitBoard(size)), actual.getVisitedMask(new BitBoard(size)));
+        assertEquals(msg, expected.getBreezeMask(new BitBoard(size)), actual.getBreezeMask(new BitBoard(size)));
+        assertEquals(msg, expected.getStenchMask(new BitBoard(size)), actual.getStenchMask(new BitBoard(size)));
+        assertEquals(msg, expected.getGlitterMask(new BitBoard(size)), actual.getGlitterMask(new BitBoard(size)));
+        assertEquals(msg, expected.getPitMask(new BitBoard(size)), actual.getPitMask(new BitBoard(size)));
+        assertEquals(msg, expected.getWumpusMask(new BitBoard(size)), actual.getWumpusMask(new BitBoard(size)));
+        for (int x = 1; x <= size; x++)
+        {
+            for (int y = 1; y <= size; y++)
+            {
+                assertEquals(msg, expected.hasWumpus(x, y), actual.hasWumpus(x, y));
+                assertEquals(msg, expected.hasStench(x, y), actual.hasStench(x, y));
+                assertEquals(msg, expected.hasGlitter(x, y), actual.hasGlitter(x, y));
+            }
+        }
+    }
+}